@@ -0,0 +1,77 @@
+package su.spb.den;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Internal queue operations: ordering of the commands on add/poll and the
+ * purge of a floor when the doors are opened.
+ * <p>
+ * The queue is kept at the {@code size} commands: each removed command is
+ * added back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CallQueueBenchmark {
+
+    private static final int FLOORS = 20;
+
+    @Param({ CallQueue.FIFO, CallQueue.LOOK })
+    public String policy;
+
+    @Param({ "16", "256", "4096" })
+    public int size;
+
+    private CallQueue myQueue;
+
+    private final SplittableRandom myRandom = new SplittableRandom(42);
+
+    @Setup
+    public void setUp() {
+        myQueue = CallQueue.forPolicy(policy);
+        for (int i = 0; i < size; i++) {
+            myQueue.add(new FloorCommand(nextFloor()));
+        }
+    }
+
+    @Benchmark
+    public Command addPoll() {
+        myQueue.add(new FloorCommand(nextFloor()));
+        return myQueue.poll(nextFloor());
+    }
+
+    @Benchmark
+    public int removeFloor() {
+        int floor = nextFloor();
+        int removed = myQueue.removeFloor(floor);
+        for (int i = 0; i < removed; i++) {
+            myQueue.add(new FloorCommand(floor));
+        }
+        return removed;
+    }
+
+    private int nextFloor() {
+        return myRandom.nextInt(FLOORS) + 1;
+    }
+
+    private static class FloorCommand extends Command {
+
+        FloorCommand(int floor) {
+            super(floor);
+        }
+
+        @Override
+        void execute(int currentFloor) {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package su.spb.den;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * End-to-end dispatching under the virtual clock: calls arrive every few
+ * seconds of virtual time and are served completely, the score is the number
+ * of served calls per second of real time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DispatchBenchmark {
+
+    private static final int CALLS = 1_000;
+
+    private static final int FLOORS = 20;
+
+    @Param({ CallQueue.FIFO, CallQueue.LOOK })
+    public String policy;
+
+    @Param({ "1", "4" })
+    public int cars;
+
+    private final int[] myFloors = new int[CALLS];
+
+    private VirtualScheduler myScheduler;
+
+    private ElevatorGroup myGroup;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < CALLS; i++) {
+            myFloors[i] = random.nextInt(FLOORS) + 1;
+        }
+        myScheduler = new VirtualScheduler();
+        myGroup = new ElevatorGroup(
+                new Parameters(new String[] { "-floors",
+                        String.valueOf(FLOORS), "-policy", policy, "-cars",
+                        String.valueOf(cars) }),
+                car -> new NullOutputProvider(), myScheduler);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long dispatch() {
+        for (int i = 0; i < CALLS; i++) {
+            int floor = myFloors[i];
+            if (i % 2 == 0) {
+                myScheduler.schedule(() -> myGroup.callOutside(floor),
+                        i * 2000L);
+            } else {
+                myScheduler.schedule(() -> myGroup.callInside(0, floor),
+                        i * 2000L);
+            }
+        }
+        myScheduler.run();
+        return myScheduler.now();
+    }
+}
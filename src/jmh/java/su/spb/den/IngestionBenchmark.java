@@ -0,0 +1,60 @@
+package su.spb.den;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Command ingestion: {@code callOutside}/{@code callInside} validation and
+ * offering the command into the command queue.
+ * <p>
+ * The virtual scheduler is never run so the commands are not dispatched, a
+ * fresh manager is created for each invocation to keep the queue size flat.
+ * The floors are cycled, so most of the calls are coalesced with the pending
+ * ones: that's the cost of a repeatedly pressed button.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngestionBenchmark {
+
+    private static final int CALLS = 10_000;
+
+    private final Parameters myParams = new Parameters(
+            new String[] { "-floors", "20", "-queue",
+                    String.valueOf(Integer.highestOneBit(CALLS) << 1) });
+
+    private ElevatorManager myManager;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        myManager = new ElevatorManager(myParams, new NullOutputProvider(),
+                new VirtualScheduler());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public ElevatorManager callOutside() {
+        for (int i = 0; i < CALLS; i++) {
+            myManager.callOutside(i % 20 + 1);
+        }
+        return myManager;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public ElevatorManager callInside() {
+        for (int i = 0; i < CALLS; i++) {
+            myManager.callInside(i % 20 + 1);
+        }
+        return myManager;
+    }
+}
@@ -0,0 +1,36 @@
+package su.spb.den;
+
+import java.util.List;
+
+/**
+ * Chooses the car of a group which serves an outside call.
+ */
+interface AssignmentStrategy {
+
+    String NEAREST = "nearest";
+    String ETA = "eta";
+    String ZONING = "zoning";
+
+    /**
+     * Returns the index of the car in the {@code cars} list which should
+     * serve the outside call from the {@code floor}.
+     */
+    int assign(int floor, List<ElevatorManager> cars, Parameters params);
+
+    /**
+     * Creates a strategy by its name, returns {@code null} if there is no
+     * strategy with the given name.
+     */
+    static AssignmentStrategy forName(String name) {
+        switch (name) {
+        case NEAREST:
+            return new NearestCarStrategy();
+        case ETA:
+            return new EtaStrategy();
+        case ZONING:
+            return new ZoningStrategy();
+        default:
+            return null;
+        }
+    }
+}
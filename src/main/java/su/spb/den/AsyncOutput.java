@@ -0,0 +1,243 @@
+package su.spb.den;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous output pipeline.
+ * <p>
+ * The output providers of the cars ({@link #forCar(int)}) only put the event
+ * values into a preallocated ring of slots and return. A dedicated consumer
+ * thread takes the events in batches and passes them to the
+ * {@link ElevatorEventListener} sink, so a slow terminal doesn't delay the
+ * elevator events. The ring uses the same slot sequence protocol as
+ * {@link MpscRingBuffer} but keeps the event fields in plain arrays, so an
+ * event costs no allocation.
+ */
+class AsyncOutput {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS
+            .toNanos(100);
+
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS
+            .toNanos(50);
+
+    enum FullPolicy {
+        /**
+         * The event is dropped if the ring is full.
+         */
+        DROP,
+        /**
+         * The producer waits for a free slot.
+         */
+        BLOCK;
+
+        /**
+         * Returns the policy by its name, {@code null} if there is no policy
+         * with the given name.
+         */
+        static FullPolicy forName(String name) {
+            for (FullPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final int[] myCars;
+
+    private final ElevatorEvent[] myEvents;
+
+    private final int[] myFloors;
+
+    private final String[] myMessages;
+
+    private final AtomicLongArray mySequences;
+
+    private final int myMask;
+
+    private final AtomicLong myTail = new AtomicLong();
+
+    private volatile long myHead;
+
+    private final FullPolicy myPolicy;
+
+    private final ElevatorEventListener mySink;
+
+    private final LongAdder myDropped = new LongAdder();
+
+    private final Thread myConsumer;
+
+    private volatile boolean isParked;
+
+    private volatile boolean isShutdown;
+
+    /**
+     * @param capacity
+     *            the number of slots, rounded up to a power of two
+     */
+    AsyncOutput(int capacity, FullPolicy policy, ElevatorEventListener sink) {
+        int size = capacity <= 1 ? 1
+                : Integer.highestOneBit(capacity - 1) << 1;
+        myCars = new int[size];
+        myEvents = new ElevatorEvent[size];
+        myFloors = new int[size];
+        myMessages = new String[size];
+        mySequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mySequences.set(i, i);
+        }
+        myMask = size - 1;
+        myPolicy = policy;
+        mySink = sink;
+        myConsumer = new Thread(this::consume, "elevator-output");
+        myConsumer.setDaemon(true);
+        myConsumer.start();
+    }
+
+    /**
+     * Returns the output provider which puts the events of the {@code car}
+     * into the pipeline.
+     */
+    OutputProvider forCar(int car) {
+        return new CarOutput(car);
+    }
+
+    long getDroppedCount() {
+        return myDropped.sum();
+    }
+
+    /**
+     * Stops the consumer after it delivers the events which are already in
+     * the pipeline.
+     */
+    void shutdown() {
+        isShutdown = true;
+        LockSupport.unpark(myConsumer);
+        try {
+            myConsumer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(int car, ElevatorEvent event, int floor,
+            String message) {
+        long slot = claim();
+        while (slot < 0 && myPolicy == FullPolicy.BLOCK && !isShutdown) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+            slot = claim();
+        }
+        if (slot < 0) {
+            myDropped.increment();
+            return;
+        }
+        int index = (int) (slot & myMask);
+        myCars[index] = car;
+        myEvents[index] = event;
+        myFloors[index] = floor;
+        myMessages[index] = message;
+        mySequences.set(index, slot + 1);
+        if (isParked) {
+            LockSupport.unpark(myConsumer);
+        }
+    }
+
+    /**
+     * Claims the tail slot.
+     *
+     * @return the sequence of the claimed slot or {@code -1} if the ring is
+     *         full
+     */
+    private long claim() {
+        long tail = myTail.get();
+        while (true) {
+            long delta = mySequences.get((int) (tail & myMask)) - tail;
+            if (delta == 0) {
+                if (myTail.compareAndSet(tail, tail + 1)) {
+                    return tail;
+                }
+                tail = myTail.get();
+            } else if (delta < 0) {
+                return -1;
+            } else {
+                tail = myTail.get();
+            }
+        }
+    }
+
+    private void consume() {
+        while (true) {
+            boolean delivered = false;
+            long head = myHead;
+            int index = (int) (head & myMask);
+            while (mySequences.get(index) == head + 1) {
+                String message = myMessages[index];
+                myMessages[index] = null;
+                mySink.onEvent(myCars[index], myEvents[index],
+                        myFloors[index], message);
+                mySequences.set(index, head + myMask + 1);
+                head++;
+                myHead = head;
+                index = (int) (head & myMask);
+                delivered = true;
+            }
+            if (delivered) {
+                mySink.endOfBatch();
+                continue;
+            }
+            if (isShutdown) {
+                return;
+            }
+            isParked = true;
+            if (mySequences.get(index) != head + 1) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            isParked = false;
+        }
+    }
+
+    private class CarOutput implements OutputProvider {
+
+        private final int myCar;
+
+        CarOutput(int car) {
+            myCar = car;
+        }
+
+        @Override
+        public void error(String error) {
+            publish(myCar, ElevatorEvent.ERROR, 0, error);
+        }
+
+        @Override
+        public void floorPassed(int floor) {
+            publish(myCar, ElevatorEvent.FLOOR_PASSED, floor, null);
+        }
+
+        @Override
+        public void doorsOpened() {
+            publish(myCar, ElevatorEvent.DOORS_OPENED, 0, null);
+        }
+
+        @Override
+        public void doorsClosed() {
+            publish(myCar, ElevatorEvent.DOORS_CLOSED, 0, null);
+        }
+
+        @Override
+        public void doorsClosing() {
+            publish(myCar, ElevatorEvent.DOORS_CLOSING, 0, null);
+        }
+
+        @Override
+        public void sameFloorInside(int floor) {
+            publish(myCar, ElevatorEvent.SAME_FLOOR_INSIDE, floor, null);
+        }
+    }
+}
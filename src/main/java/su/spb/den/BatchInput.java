@@ -0,0 +1,209 @@
+package su.spb.den;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non interactive input: reads the commands parsed by the
+ * {@link CommandParser} and passes them to a new {@link ElevatorGroup}
+ * without any per command or per event output.
+ * <p>
+ * A timestamped command is issued at its time from the start of the batch:
+ * under the virtual time the scheduler is advanced to that time, under the
+ * real time the reader waits for it. Commands without timestamps and
+ * commands with timestamps in the past are issued immediately. At the end of
+ * the input the batch waits until all the calls are served.
+ */
+class BatchInput {
+
+    private static final long IDLE_CHECK_NANOS = TimeUnit.MILLISECONDS
+            .toNanos(10);
+
+    private final Scheduler myScheduler;
+
+    private final ElevatorGroup myGroup;
+
+    private final EventLog myLog;
+
+    private final LongAdder myErrorCount = new LongAdder();
+
+    private long myOutsideCount;
+
+    private long myInsideCount;
+
+    private long myDestinationCount;
+
+    private long myInvalidCount;
+
+    private long myFirstInvalidLine;
+
+    private long myLineCount;
+
+    private long myParseTime;
+
+    private long myDuration;
+
+    /**
+     * @param log
+     *            the log to record the calls and the events to, may be
+     *            {@code null}
+     */
+    BatchInput(Parameters params, Scheduler scheduler, EventLog log) {
+        myScheduler = scheduler;
+        myLog = log;
+        myGroup = new ElevatorGroup(params, car -> {
+            OutputProvider output = new ErrorCounter();
+            return log == null ? output : log.record(car, output);
+        }, scheduler);
+    }
+
+    ElevatorGroup getGroup() {
+        return myGroup;
+    }
+
+    /**
+     * Executes all the commands of the {@code input} and returns when all
+     * the calls have been served.
+     */
+    void run(InputStream input) throws IOException {
+        CommandParser parser = new CommandParser(input);
+        long startNanos = System.nanoTime();
+        long start = myScheduler.now();
+        int cars = myGroup.getCars().size();
+        long waitNanos = 0;
+        int type;
+        while ((type = parser.next()) != CommandParser.END) {
+            if (type == CommandParser.INVALID || (type == CommandParser.INSIDE
+                    && (parser.getCar() < 1 || parser.getCar() > cars))) {
+                if (myInvalidCount++ == 0) {
+                    myFirstInvalidLine = parser.getLine();
+                }
+                continue;
+            }
+            if (parser.getTime() != CommandParser.NO_TIME) {
+                waitNanos += advance(start + parser.getTime());
+            }
+            if (type == CommandParser.OUTSIDE) {
+                int car = myGroup.callOutside(parser.getFloor());
+                if (myLog != null && car >= 0) {
+                    myLog.callOutside(car, parser.getFloor());
+                }
+                myOutsideCount++;
+            } else if (type == CommandParser.DESTINATION) {
+                int car = myGroup.callDestination(parser.getFloor(),
+                        parser.getDestination());
+                if (myLog != null && car >= 0) {
+                    myLog.callDestination(car, parser.getFloor(),
+                            parser.getDestination());
+                }
+                myDestinationCount++;
+            } else {
+                myGroup.callInside(parser.getCar() - 1, parser.getFloor());
+                if (myLog != null) {
+                    myLog.callInside(parser.getCar() - 1, parser.getFloor());
+                }
+                myInsideCount++;
+            }
+        }
+        myLineCount = parser.getLine();
+        myParseTime = TimeUnit.NANOSECONDS
+                .toMillis(System.nanoTime() - startNanos - waitNanos);
+        awaitIdle();
+        myDuration = myScheduler.now() - start;
+    }
+
+    long getCallCount() {
+        return myOutsideCount + myInsideCount + myDestinationCount;
+    }
+
+    long getInvalidCount() {
+        return myInvalidCount;
+    }
+
+    long getErrorCount() {
+        return myErrorCount.sum();
+    }
+
+    /**
+     * Returns the time from the start of the batch to the moment when all
+     * the calls have been served in milliseconds.
+     */
+    long getDuration() {
+        return myDuration;
+    }
+
+    /**
+     * Returns the summary report of the batch.
+     */
+    String format() {
+        long rejected = 0;
+        long coalesced = 0;
+        for (ElevatorManager car : myGroup.getCars()) {
+            rejected += car.getRejectedCount();
+            coalesced += car.getCoalescedCount();
+        }
+        StringBuilder builder = new StringBuilder("Batch summary:\n");
+        builder.append("  lines: ").append(myLineCount).append(", calls: ")
+                .append(getCallCount()).append(" (outside ")
+                .append(myOutsideCount).append(", inside ")
+                .append(myInsideCount).append(", destination ")
+                .append(myDestinationCount).append("), invalid: ")
+                .append(myInvalidCount);
+        if (myInvalidCount > 0) {
+            builder.append(" (first at line ").append(myFirstInvalidLine)
+                    .append(')');
+        }
+        builder.append("\n  rejected: ").append(rejected)
+                .append(", coalesced: ").append(coalesced)
+                .append(", errors: ").append(getErrorCount());
+        builder.append("\n  issued in ").append(myParseTime).append(" ms");
+        if (myParseTime > 0) {
+            builder.append(" (")
+                    .append(getCallCount() * 1000 / myParseTime)
+                    .append(" calls per second)");
+        }
+        builder.append(", served in ").append(myDuration).append(" ms of ")
+                .append(myScheduler.isVirtual() ? "virtual" : "real")
+                .append(" time");
+        return builder.toString();
+    }
+
+    /**
+     * Advances the time to the {@code time}.
+     *
+     * @return the real time spent on waiting in nanoseconds
+     */
+    private long advance(long time) {
+        if (myScheduler.isVirtual()) {
+            ((VirtualScheduler) myScheduler).runUntil(time);
+            return 0;
+        }
+        long start = System.nanoTime();
+        long delay;
+        while ((delay = time - myScheduler.now()) > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(delay));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void awaitIdle() {
+        if (myScheduler.isVirtual()) {
+            ((VirtualScheduler) myScheduler).run();
+            return;
+        }
+        while (!myGroup.getCars().stream().allMatch(ElevatorManager::isIdle)) {
+            LockSupport.parkNanos(IDLE_CHECK_NANOS);
+        }
+    }
+
+    private class ErrorCounter extends NullOutputProvider {
+
+        @Override
+        public void error(String error) {
+            myErrorCount.increment();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package su.spb.den;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Queue of the commands which wait to be executed by the elevator.
+ * <p>
+ * The implementation defines the scheduling policy: the order in which the
+ * floors are served. It's accessed from the dispatcher thread only.
+ */
+interface CallQueue {
+
+    String FIFO = "fifo";
+    String LOOK = "look";
+
+    void add(Command command);
+
+    /**
+     * Removes and returns the command which should be executed next or
+     * {@code null} if the queue is empty.
+     *
+     * @param currentFloor
+     *            the floor where the elevator is at the moment
+     */
+    Command poll(int currentFloor);
+
+    /**
+     * Removes all the commands for the {@code floor}.
+     *
+     * @return the number of removed commands
+     */
+    int removeFloor(int floor);
+
+    int size();
+
+    /**
+     * Passes the floors of the queued commands to the {@code consumer} in the
+     * order they are going to be served as far as it's known now. A floor may
+     * be passed more than once.
+     *
+     * @param currentFloor
+     *            the floor where the elevator is going to be when it takes
+     *            the next command
+     */
+    void forEachStop(int currentFloor, IntConsumer consumer);
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Creates a queue for the scheduling policy by its name, returns
+     * {@code null} if there is no policy with the given name.
+     */
+    static CallQueue forPolicy(String name) {
+        switch (name) {
+        case FIFO:
+            return new FifoCallQueue();
+        case LOOK:
+            return new LookCallQueue();
+        default:
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package su.spb.den;
+
+/**
+ * Immutable snapshot of the state of a car.
+ * <p>
+ * The dispatcher of the car builds a new snapshot after each state transition
+ * (a call accepted, a floor passed, a doors state change) and publishes it via
+ * a volatile field, so a snapshot may be read from any thread without locking
+ * and its fields are consistent with each other. The snapshot is not updated
+ * between the transitions: if the passed floors are not reported the position
+ * of a moving car is the position at the last transition.
+ */
+class CarState {
+
+    enum Direction {
+        UP, DOWN, NONE
+    }
+
+    enum Doors {
+        CLOSED, OPENING, OPEN, CLOSING
+    }
+
+    private final long mySequence;
+
+    private final long myTime;
+
+    private final int myPosition;
+
+    private final int myTargetFloor;
+
+    private final Direction myDirection;
+
+    private final Doors myDoors;
+
+    private final int myQueueDepth;
+
+    private final int myOutstanding;
+
+    private final int myLoad;
+
+    private final CostTable myPlan;
+
+    CarState(long sequence, long time, int position, int targetFloor,
+            Direction direction, Doors doors, int queueDepth,
+            int outstanding, int load, CostTable plan) {
+        mySequence = sequence;
+        myTime = time;
+        myPosition = position;
+        myTargetFloor = targetFloor;
+        myDirection = direction;
+        myDoors = doors;
+        myQueueDepth = queueDepth;
+        myOutstanding = outstanding;
+        myLoad = load;
+        myPlan = plan;
+    }
+
+    /**
+     * Returns the number of the snapshot: it grows with each published
+     * snapshot of the car, so a poller may skip the snapshot it has seen.
+     */
+    long getSequence() {
+        return mySequence;
+    }
+
+    /**
+     * Returns the scheduler time of the transition.
+     */
+    long getTime() {
+        return myTime;
+    }
+
+    int getPosition() {
+        return myPosition;
+    }
+
+    int getTargetFloor() {
+        return myTargetFloor;
+    }
+
+    Direction getDirection() {
+        return myDirection;
+    }
+
+    Doors getDoors() {
+        return myDoors;
+    }
+
+    /**
+     * Returns the number of the commands which are accepted but not yet
+     * taken by the dispatcher.
+     */
+    int getQueueDepth() {
+        return myQueueDepth;
+    }
+
+    int getOutstandingCount() {
+        return myOutstanding;
+    }
+
+    /**
+     * Returns the number of passengers in the car.
+     */
+    int getLoad() {
+        return myLoad;
+    }
+
+    /**
+     * Returns the plan of the car: its stops and their times.
+     */
+    CostTable getPlan() {
+        return myPlan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("floor ").append(myPosition).append(' ')
+                .append(myDirection.name().toLowerCase()).append(", doors ")
+                .append(myDoors.name().toLowerCase()).append(", stops [");
+        for (int i = 0; i < myPlan.getStopCount(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(myPlan.getStop(i));
+        }
+        return builder.append("], queued ").append(myQueueDepth).toString();
+    }
+}
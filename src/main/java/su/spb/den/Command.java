@@ -1,12 +1,34 @@
 package su.spb.den;
 
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
 
 abstract class Command implements Comparable<Command> {
 
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
     private final int myFloor;
 
-    private long order = System.currentTimeMillis();
+    private final long order = SEQUENCE.incrementAndGet();
+
+    /**
+     * The real time of the command submission in nanoseconds, set only if
+     * the metrics are enabled.
+     */
+    private long mySubmitTime;
+
+    /**
+     * The links of the command in the {@link FloorCallQueue} which holds it:
+     * the commands of the same floor and the commands in the order of the
+     * queue. A command is held by one queue at most.
+     */
+    Command myFloorPrev;
+
+    Command myFloorNext;
+
+    Command myOrderPrev;
+
+    Command myOrderNext;
 
     Command(int floor) {
         myFloor = floor;
@@ -18,6 +40,21 @@ abstract class Command implements Comparable<Command> {
         return myFloor;
     }
 
+    /**
+     * Returns {@code true} if the command is a call from inside of the car.
+     */
+    boolean isInside() {
+        return false;
+    }
+
+    long getSubmitTime() {
+        return mySubmitTime;
+    }
+
+    void setSubmitTime(long time) {
+        mySubmitTime = time;
+    }
+
     @Override
     public int compareTo(Command o) {
         return Comparator.<Long> naturalOrder().compare(order, o.order);
@@ -0,0 +1,261 @@
+package su.spb.den;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Byte level parser of the batch commands.
+ * <p>
+ * A line contains one command: {@code o N}, {@code i N}, {@code i N C} or
+ * the destination call {@code d N M} from the floor N to the floor M,
+ * optionally prefixed with the timestamp {@code @T} where the T is the time
+ * in milliseconds from the start of the batch. Empty lines and lines
+ * starting with {@code #} are skipped, {@code quit} ends the batch like the
+ * end of the input.
+ * <p>
+ * The input is read via a reusable byte buffer and the numbers are parsed in
+ * place, so no objects are allocated per line. The values of the parsed
+ * command are available via the getters after {@link #next()}.
+ */
+class CommandParser {
+
+    static final int OUTSIDE = 0;
+
+    static final int INSIDE = 1;
+
+    static final int INVALID = 2;
+
+    static final int END = 3;
+
+    static final int DESTINATION = 4;
+
+    /**
+     * The timestamp of a command without timestamp.
+     */
+    static final long NO_TIME = -1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int NO_NUMBER = -1;
+
+    private static final int EOF = -1;
+
+    private static final byte[] QUIT = { 'q', 'u', 'i', 't' };
+
+    private final InputStream myInput;
+
+    private final byte[] myBuffer;
+
+    private int myPosition;
+
+    private int myLimit;
+
+    private long myLine;
+
+    private long myTime;
+
+    private int myFloor;
+
+    private int myCar;
+
+    private int myDestination;
+
+    CommandParser(InputStream input) {
+        this(input, BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize
+     *            the size of the read buffer, a small buffer is enough for a
+     *            short input
+     */
+    CommandParser(InputStream input, int bufferSize) {
+        myInput = input;
+        myBuffer = new byte[bufferSize];
+    }
+
+    /**
+     * Parses the next command.
+     *
+     * @return the type of the command: {@link #OUTSIDE}, {@link #INSIDE},
+     *         {@link #DESTINATION}, {@link #INVALID} or {@link #END} if there
+     *         are no more commands
+     */
+    int next() throws IOException {
+        while (true) {
+            int first = skipBlanks();
+            if (first == EOF) {
+                return END;
+            }
+            myLine++;
+            if (first == '\n' || first == '#') {
+                skipLine(first);
+                continue;
+            }
+            int result = parseLine(first);
+            if (result == END) {
+                return END;
+            }
+            if (result == INVALID) {
+                skipLine(peek());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the number of the last parsed line starting from 1.
+     */
+    long getLine() {
+        return myLine;
+    }
+
+    /**
+     * Returns the timestamp of the command, {@link #NO_TIME} if the command
+     * has no timestamp.
+     */
+    long getTime() {
+        return myTime;
+    }
+
+    int getFloor() {
+        return myFloor;
+    }
+
+    /**
+     * Returns the car number of the inside call (starting from 1).
+     */
+    int getCar() {
+        return myCar;
+    }
+
+    /**
+     * Returns the destination floor of the destination call.
+     */
+    int getDestination() {
+        return myDestination;
+    }
+
+    private int parseLine(int first) throws IOException {
+        int current = first;
+        myTime = NO_TIME;
+        myCar = 1;
+        if (current == '@') {
+            read();
+            myTime = readNumber();
+            if (myTime == NO_NUMBER) {
+                return INVALID;
+            }
+            current = skipBlanks();
+        }
+        if (current == 'q' && matchQuit()) {
+            return END;
+        }
+        int type;
+        if (current == 'o' || current == 'O') {
+            type = OUTSIDE;
+        } else if (current == 'i' || current == 'I') {
+            type = INSIDE;
+        } else if (current == 'd' || current == 'D') {
+            type = DESTINATION;
+        } else {
+            return INVALID;
+        }
+        read();
+        skipBlanks();
+        long floor = readNumber();
+        if (floor == NO_NUMBER || floor > Integer.MAX_VALUE) {
+            return INVALID;
+        }
+        myFloor = (int) floor;
+        int next = skipBlanks();
+        if (type == INSIDE && next >= '0' && next <= '9') {
+            long car = readNumber();
+            if (car > Integer.MAX_VALUE) {
+                return INVALID;
+            }
+            myCar = (int) car;
+            next = skipBlanks();
+        } else if (type == DESTINATION) {
+            long destination = readNumber();
+            if (destination == NO_NUMBER || destination > Integer.MAX_VALUE) {
+                return INVALID;
+            }
+            myDestination = (int) destination;
+            next = skipBlanks();
+        }
+        if (next != '\n' && next != EOF) {
+            return INVALID;
+        }
+        read();
+        return type;
+    }
+
+    private boolean matchQuit() throws IOException {
+        for (byte b : QUIT) {
+            if (peek() != b) {
+                return false;
+            }
+            read();
+        }
+        int next = skipBlanks();
+        return next == '\n' || next == EOF;
+    }
+
+    private long readNumber() throws IOException {
+        int current = peek();
+        if (current < '0' || current > '9') {
+            return NO_NUMBER;
+        }
+        long result = 0;
+        while (current >= '0' && current <= '9') {
+            if (result < Long.MAX_VALUE / 10) {
+                result = result * 10 + current - '0';
+            }
+            read();
+            current = peek();
+        }
+        return result;
+    }
+
+    /**
+     * Skips spaces, tabs and carriage returns.
+     *
+     * @return the next byte which is not skipped
+     */
+    private int skipBlanks() throws IOException {
+        int current = peek();
+        while (current == ' ' || current == '\t' || current == '\r') {
+            read();
+            current = peek();
+        }
+        return current;
+    }
+
+    private void skipLine(int first) throws IOException {
+        int current = first;
+        while (current != '\n' && current != EOF) {
+            read();
+            current = peek();
+        }
+        read();
+    }
+
+    private int peek() throws IOException {
+        if (myPosition == myLimit) {
+            myLimit = myInput.read(myBuffer, 0, myBuffer.length);
+            myPosition = 0;
+            if (myLimit <= 0) {
+                myLimit = 0;
+                return EOF;
+            }
+        }
+        return myBuffer[myPosition] & 0xFF;
+    }
+
+    private void read() {
+        if (myPosition < myLimit) {
+            myPosition++;
+        }
+    }
+}
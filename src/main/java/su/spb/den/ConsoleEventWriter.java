@@ -0,0 +1,65 @@
+package su.spb.den;
+
+import java.io.PrintStream;
+
+/**
+ * Writes the elevator events to the console in batches: the messages of a
+ * batch are collected and printed at once followed by the command invite.
+ */
+class ConsoleEventWriter implements ElevatorEventListener {
+
+    private final PrintStream myOut;
+
+    private final PrintStream myErr;
+
+    private final boolean isSingleCar;
+
+    private final StringBuilder myOutBuffer = new StringBuilder();
+
+    private final StringBuilder myErrBuffer = new StringBuilder();
+
+    ConsoleEventWriter(boolean singleCar) {
+        this(System.out, System.err, singleCar);
+    }
+
+    ConsoleEventWriter(PrintStream out, PrintStream err, boolean singleCar) {
+        myOut = out;
+        myErr = err;
+        isSingleCar = singleCar;
+    }
+
+    @Override
+    public void onEvent(int car, ElevatorEvent event, int floor,
+            String message) {
+        if (event == ElevatorEvent.ERROR) {
+            appendPrefix(myErrBuffer, car).append(message).append('\n');
+            return;
+        }
+        String text = OutputProviderImpl.getMessage(event, floor);
+        if (text != null) {
+            appendPrefix(myOutBuffer.append('\n'), car).append(text)
+                    .append('\n');
+        }
+    }
+
+    @Override
+    public void endOfBatch() {
+        if (myErrBuffer.length() > 0) {
+            myErr.print(myErrBuffer);
+            myErr.flush();
+            myErrBuffer.setLength(0);
+        }
+        if (myOutBuffer.length() > 0) {
+            myOut.print(myOutBuffer.append("> "));
+            myOut.flush();
+            myOutBuffer.setLength(0);
+        }
+    }
+
+    private StringBuilder appendPrefix(StringBuilder builder, int car) {
+        if (!isSingleCar) {
+            builder.append("Car ").append(car + 1).append(": ");
+        }
+        return builder;
+    }
+}
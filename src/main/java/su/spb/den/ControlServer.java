@@ -0,0 +1,348 @@
+package su.spb.den;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP control and telemetry endpoint based on the JDK HTTP server.
+ * <ul>
+ * <li>{@code POST /calls} submits the calls of the request body, one call
+ * per line in the batch syntax ({@code o N}, {@code i N}, {@code i N C} or
+ * {@code d N M}),
+ * and responds with the JSON counts of the accepted and invalid calls.</li>
+ * <li>{@code GET /state} responds with the JSON array of the car states.</li>
+ * <li>{@code GET /metrics} responds with the formatted metrics if they are
+ * enabled.</li>
+ * <li>{@code GET /events} streams the car events as server-sent events.</li>
+ * </ul>
+ * The server is a listener of the car events: the output providers of the
+ * cars have to be wrapped via {@link #record(int, OutputProvider)}. An event
+ * is formatted once and offered to the bounded queue of each event stream,
+ * so a slow client loses its events instead of delaying the cars.
+ */
+class ControlServer implements ElevatorEventListener, Closeable {
+
+    static final String CALLS_PATH = "/calls";
+
+    static final String STATE_PATH = "/state";
+
+    static final String METRICS_PATH = "/metrics";
+
+    static final String EVENTS_PATH = "/events";
+
+    private static final int STREAM_CAPACITY = 1024;
+
+    private static final int BODY_BUFFER_SIZE = 4096;
+
+    private static final long KEEP_ALIVE_MILLIS = TimeUnit.SECONDS
+            .toMillis(15);
+
+    private static final String JSON_TYPE = "application/json";
+
+    /**
+     * The JDK server doesn't disable the Nagle's algorithm by default, so a
+     * small response waits for the delayed ACK of the client.
+     */
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    static {
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, Boolean.TRUE.toString());
+        }
+    }
+
+    private final HttpServer myServer;
+
+    private final ExecutorService myExecutor;
+
+    private final int myFloors;
+
+    private final List<BlockingQueue<String>> myStreams = new CopyOnWriteArrayList<>();
+
+    private final LongAdder myDropped = new LongAdder();
+
+    private volatile ElevatorGroup myGroup;
+
+    private volatile EventLog myLog;
+
+    private volatile boolean isClosed;
+
+    /**
+     * Binds the server to the {@code address}. The server doesn't accept the
+     * requests until it's {@link #start(ElevatorGroup, EventLog) started}.
+     */
+    ControlServer(InetSocketAddress address, Parameters params)
+            throws IOException {
+        myFloors = params.getFloorNumbers();
+        myServer = HttpServer.create(address, 0);
+        myExecutor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "elevator-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        myServer.setExecutor(myExecutor);
+        myServer.createContext(CALLS_PATH, new Handler("POST", this::calls));
+        myServer.createContext(STATE_PATH, new Handler("GET", this::state));
+        myServer.createContext(METRICS_PATH,
+                new Handler("GET", this::metrics));
+        myServer.createContext(EVENTS_PATH, new Handler("GET", this::events));
+    }
+
+    /**
+     * Returns the output provider which streams the events of the
+     * {@code car} and passes them to the {@code delegate}.
+     */
+    OutputProvider record(int car, OutputProvider delegate) {
+        return new EventOutput(car, this, delegate);
+    }
+
+    /**
+     * Starts serving the requests for the {@code group}.
+     *
+     * @param log
+     *            the log to record the submitted calls to, may be
+     *            {@code null}
+     */
+    void start(ElevatorGroup group, EventLog log) {
+        myGroup = group;
+        myLog = log;
+        myServer.start();
+    }
+
+    int getPort() {
+        return myServer.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of the events which have been dropped because an
+     * event stream has not kept up.
+     */
+    long getDroppedCount() {
+        return myDropped.sum();
+    }
+
+    @Override
+    public void onEvent(int car, ElevatorEvent event, int floor,
+            String message) {
+        if (myStreams.isEmpty()) {
+            return;
+        }
+        ElevatorGroup group = myGroup;
+        StringBuilder builder = new StringBuilder("event: ")
+                .append(event.name().toLowerCase()).append("\ndata: {\"car\": ")
+                .append(car + 1).append(", \"floor\": ")
+                .append(floor != 0 || group == null ? floor
+                        : group.getCars().get(car).getPosition());
+        if (message != null) {
+            appendString(builder.append(", \"message\": "), message);
+        }
+        String text = builder.append("}\n\n").toString();
+        for (BlockingQueue<String> stream : myStreams) {
+            if (!stream.offer(text)) {
+                myDropped.increment();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        myServer.stop(0);
+        myExecutor.shutdownNow();
+    }
+
+    private void calls(HttpExchange exchange) throws IOException {
+        ElevatorGroup group = myGroup;
+        EventLog log = myLog;
+        int cars = group.getCars().size();
+        CommandParser parser = new CommandParser(exchange.getRequestBody(),
+                BODY_BUFFER_SIZE);
+        int outside = 0;
+        int inside = 0;
+        int destination = 0;
+        int invalid = 0;
+        int type;
+        while ((type = parser.next()) != CommandParser.END) {
+            int floor = parser.getFloor();
+            int car = parser.getCar();
+            boolean valid = type != CommandParser.INVALID && floor >= 1
+                    && floor <= myFloors;
+            if (type == CommandParser.INSIDE) {
+                valid = valid && car >= 1 && car <= cars;
+            } else if (type == CommandParser.DESTINATION) {
+                valid = valid && parser.getDestination() >= 1
+                        && parser.getDestination() <= myFloors;
+            }
+            if (!valid) {
+                invalid++;
+            } else if (type == CommandParser.OUTSIDE) {
+                car = group.callOutside(floor);
+                if (log != null) {
+                    log.callOutside(car, floor);
+                }
+                outside++;
+            } else if (type == CommandParser.DESTINATION) {
+                car = group.callDestination(floor, parser.getDestination());
+                if (log != null) {
+                    log.callDestination(car, floor, parser.getDestination());
+                }
+                destination++;
+            } else {
+                group.callInside(car - 1, floor);
+                if (log != null) {
+                    log.callInside(car - 1, floor);
+                }
+                inside++;
+            }
+        }
+        respond(exchange, 200, JSON_TYPE,
+                "{\"outside\": " + outside + ", \"inside\": " + inside
+                        + ", \"destination\": " + destination
+                        + ", \"invalid\": " + invalid + "}");
+    }
+
+    private void state(HttpExchange exchange) throws IOException {
+        List<ElevatorManager> cars = myGroup.getCars();
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < cars.size(); i++) {
+            CarState state = cars.get(i).getState();
+            CostTable plan = state.getPlan();
+            builder.append(i == 0 ? "\n" : ",\n").append("{\"car\": ")
+                    .append(i + 1).append(", \"floor\": ")
+                    .append(state.getPosition()).append(", \"direction\": \"")
+                    .append(state.getDirection().name().toLowerCase())
+                    .append("\", \"doors\": \"")
+                    .append(state.getDoors().name().toLowerCase())
+                    .append("\", \"target\": ")
+                    .append(state.getTargetFloor()).append(", \"stops\": [");
+            for (int j = 0; j < plan.getStopCount(); j++) {
+                builder.append(j == 0 ? "" : ", ").append(plan.getStop(j));
+            }
+            builder.append("], \"queued\": ").append(state.getQueueDepth())
+                    .append(", \"load\": ").append(state.getLoad())
+                    .append(", \"outstanding\": ")
+                    .append(state.getOutstandingCount())
+                    .append(", \"sequence\": ").append(state.getSequence())
+                    .append('}');
+        }
+        respond(exchange, 200, JSON_TYPE, builder.append("\n]\n").toString());
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        ElevatorGroup group = myGroup;
+        ElevatorMetrics metrics = group.getMetrics();
+        if (metrics == null) {
+            respond(exchange, 404, "text/plain", "The metrics are disabled\n");
+        } else {
+            respond(exchange, 200, "text/plain",
+                    metrics.format(group.getScheduler().now()));
+        }
+    }
+
+    private void events(HttpExchange exchange) throws IOException {
+        BlockingQueue<String> stream = new ArrayBlockingQueue<>(
+                STREAM_CAPACITY);
+        exchange.getResponseHeaders().set("Content-Type",
+                "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        myStreams.add(stream);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (!isClosed) {
+                String event = stream.poll(KEEP_ALIVE_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                out.write((event == null ? ": keep-alive\n\n" : event)
+                        .getBytes(StandardCharsets.UTF_8));
+                // the queued events go out with a single flush
+                while ((event = stream.poll()) != null) {
+                    out.write(event.getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            myStreams.remove(stream);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int code, String type,
+            String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < ' ') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    private interface Action {
+
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Checks the method of the request and passes it to the action.
+     */
+    private class Handler implements HttpHandler {
+
+        private final String myMethod;
+
+        private final Action myAction;
+
+        Handler(String method, Action action) {
+            myMethod = method;
+            myAction = action;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!myMethod.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", myMethod);
+                    respond(exchange, 405, "text/plain",
+                            "Method not allowed\n");
+                } else if (!exchange.getRequestURI().getPath()
+                        .equals(exchange.getHttpContext().getPath())) {
+                    respond(exchange, 404, "text/plain", "Not found\n");
+                } else {
+                    myAction.handle(exchange);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
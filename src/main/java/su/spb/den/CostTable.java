@@ -0,0 +1,320 @@
+package su.spb.den;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable snapshot of the plan of a car: when the car opens its doors at
+ * each floor if a call for the floor is assigned to it now.
+ * <p>
+ * A floor which is already a stop of the plan is served at the time of the
+ * stop. Any other floor is appended to the plan: it's served after the last
+ * stop. So a query is a table lookup or a cached travel time, no simulation
+ * of the car queue is needed. The car builds a new snapshot on each change of
+ * its plan and publishes it for the assignment strategies.
+ * <p>
+ * The snapshot copies only the planned stops, so building it costs the
+ * number of the stops rather than the number of the floors. The stops are
+ * found by the floor index shared by all the snapshots of the car: each entry
+ * is stamped with the generation of the snapshot which has planned the stop
+ * at the floor. An entry of an older generation means that the floor is not
+ * a stop of the snapshot. An entry of a newer generation has been overwritten
+ * by a later snapshot: the stale snapshot falls back to the scan of its
+ * stops.
+ */
+class CostTable {
+
+    /**
+     * The result of {@link #findStop(int)} for the floor which is not a stop.
+     */
+    static final int NOT_PLANNED = -1;
+
+    /**
+     * The result of {@link #findStop(int)} for the floor whose index entry is
+     * overwritten by a later snapshot.
+     */
+    static final int SUPERSEDED = -2;
+
+    private static final long NO_STOP = Long.MIN_VALUE;
+
+    private static final int GENERATION_SHIFT = 32;
+
+    private static final long MAX_GENERATION = (1L << 32) - 1;
+
+    private final MotionProfile myProfile;
+
+    /**
+     * The floors of the planned stops in the plan order.
+     */
+    private final int[] myStops;
+
+    /**
+     * The times when the doors are opened at the {@link #myStops}.
+     */
+    private final long[] myStopTimes;
+
+    /**
+     * The floor index shared with the builder and the other snapshots.
+     */
+    private final AtomicLongArray myIndex;
+
+    private final long myGeneration;
+
+    private final long myFreeTime;
+
+    private final int myLastFloor;
+
+    private final int myOutstanding;
+
+    private final long myOpenTime;
+
+    private final long myStopCost;
+
+    private CostTable(Builder builder, int outstanding) {
+        myProfile = builder.myProfile;
+        myStops = Arrays.copyOf(builder.myStops, builder.myStopCount);
+        myStopTimes = Arrays.copyOf(builder.myStopTimes,
+                builder.myStopCount);
+        myIndex = builder.myIndex;
+        myGeneration = builder.myGeneration;
+        myFreeTime = builder.myFreeTime;
+        myLastFloor = builder.myLastFloor;
+        myOutstanding = outstanding;
+        myOpenTime = builder.myOpenTime;
+        myStopCost = builder.myStopCost;
+    }
+
+    /**
+     * Returns the time when the car opens its doors at the {@code floor}.
+     *
+     * @param outstanding
+     *            the number of the outstanding commands of the car at the
+     *            moment: the commands which are accepted but not yet planned
+     *            are estimated as average stops
+     */
+    long getServeTime(int floor, int outstanding) {
+        long time = getStopTime(floor);
+        if (time == NO_STOP) {
+            time = myFreeTime + myProfile.getTravelTime(myLastFloor, floor)
+                    + myOpenTime;
+        }
+        return time + Math.max(0, outstanding - myOutstanding) * myStopCost;
+    }
+
+    /**
+     * Returns {@code true} if the car is going to open its doors at the
+     * {@code floor}.
+     */
+    boolean isStop(int floor) {
+        return getStopTime(floor) != NO_STOP;
+    }
+
+    /**
+     * Returns the estimated cost of one more stop in milliseconds.
+     */
+    long getStopCost() {
+        return myStopCost;
+    }
+
+    int getStopCount() {
+        return myStops.length;
+    }
+
+    /**
+     * Returns the floor of the planned stop with the {@code index} in the plan
+     * order.
+     */
+    int getStop(int index) {
+        return myStops[index];
+    }
+
+    /**
+     * Returns the time when the car completes all its planned stops.
+     */
+    long getFreeTime() {
+        return myFreeTime;
+    }
+
+    /**
+     * Returns the floor of the last planned stop, the floor where the car
+     * stands if there are no stops.
+     */
+    int getLastFloor() {
+        return myLastFloor;
+    }
+
+    /**
+     * Looks the {@code floor} up in the floor index in constant time.
+     *
+     * @return the index of the stop at the floor in the plan order,
+     *         {@link #NOT_PLANNED} or {@link #SUPERSEDED} if the index entry
+     *         of the floor belongs to a later snapshot
+     */
+    int findStop(int floor) {
+        long entry = myIndex.get(floor);
+        long generation = entry >>> GENERATION_SHIFT;
+        if (generation == myGeneration) {
+            return (int) entry;
+        }
+        return generation < myGeneration ? NOT_PLANNED : SUPERSEDED;
+    }
+
+    private long getStopTime(int floor) {
+        int index = findStop(floor);
+        if (index == SUPERSEDED) {
+            for (index = myStops.length - 1; index >= 0; index--) {
+                if (myStops[index] == floor) {
+                    break;
+                }
+            }
+        }
+        return index < 0 ? NO_STOP : myStopTimes[index];
+    }
+
+    /**
+     * Builds the tables of a car, owned by the dispatcher of the car.
+     */
+    static class Builder implements IntConsumer {
+
+        private final MotionProfile myProfile;
+
+        private final int myFloors;
+
+        private final long myOpenTime;
+
+        private final long myCloseTime;
+
+        /**
+         * The time from the opened doors to the closed doors.
+         */
+        private long myDwellTime;
+
+        /**
+         * The estimated cost of a stop which is not planned yet: an average
+         * trip along with the doors cycle.
+         */
+        private long myStopCost;
+
+        /**
+         * The open times of the stops in the plan order.
+         */
+        private final long[] myStopTimes;
+
+        private final int[] myStops;
+
+        /**
+         * The floor index: the generation of the plan in the upper half of
+         * an entry and the index of the stop in the lower half. The entries
+         * are never cleared, a new plan just takes the next generation.
+         */
+        private AtomicLongArray myIndex;
+
+        private long myGeneration;
+
+        private int myStopCount;
+
+        private long myFreeTime;
+
+        private int myLastFloor;
+
+        Builder(Parameters params) {
+            myProfile = params.getMotionProfile();
+            myFloors = params.getFloorNumbers();
+            myStops = new int[myFloors + 1];
+            myStopTimes = new long[myFloors + 1];
+            myIndex = new AtomicLongArray(myFloors + 1);
+            myOpenTime = (long) (params.getOpenDoorsTime() * 1000);
+            myCloseTime = (long) (params.getCloseDoorsTime() * 1000);
+            dwell(params.getEntranceTime() * 1000);
+        }
+
+        /**
+         * Sets the {@code time} the doors stay open at a stop which is not
+         * started yet.
+         */
+        Builder dwell(long time) {
+            myDwellTime = time + myCloseTime;
+            myStopCost = myOpenTime + myDwellTime + myProfile
+                    .getTravelTime(0, Math.max(1, myFloors / 3));
+            return this;
+        }
+
+        /**
+         * Starts a new plan of the car which is free since the {@code time}
+         * at the {@code floor}.
+         */
+        Builder start(long time, int floor) {
+            if (myGeneration == MAX_GENERATION) {
+                // the published snapshots keep the old index
+                myIndex = new AtomicLongArray(myFloors + 1);
+                myGeneration = 0;
+            }
+            myGeneration++;
+            myStopCount = 0;
+            myFreeTime = time;
+            myLastFloor = floor;
+            return this;
+        }
+
+        /**
+         * Adds the stop which is in progress: the doors are opened at the
+         * {@code floor} at the {@code openTime} and closed at the
+         * {@code closeTime}. The stop is served at the floor only if the doors
+         * are not yet opened at the {@code now} time.
+         */
+        Builder startTrip(int floor, long openTime, long closeTime,
+                long now) {
+            if (openTime > now) {
+                addStop(floor, openTime);
+            }
+            myFreeTime = closeTime;
+            myLastFloor = floor;
+            return this;
+        }
+
+        /**
+         * Adds the move in progress which is not a stop: the car arrives at
+         * the {@code floor} at the {@code time}.
+         */
+        Builder startMove(int floor, long time) {
+            myFreeTime = time;
+            myLastFloor = floor;
+            return this;
+        }
+
+        /**
+         * Appends the stop at the {@code floor} to the plan unless the floor
+         * is already a stop.
+         */
+        @Override
+        public void accept(int floor) {
+            if (myIndex.get(floor) >>> GENERATION_SHIFT == myGeneration) {
+                return;
+            }
+            long open = myFreeTime + myProfile.getTravelTime(myLastFloor, floor)
+                    + myOpenTime;
+            addStop(floor, open);
+            myFreeTime = open + myDwellTime;
+            myLastFloor = floor;
+        }
+
+        /**
+         * Returns the snapshot of the plan.
+         *
+         * @param outstanding
+         *            the number of the outstanding commands of the car the
+         *            plan includes
+         */
+        CostTable build(int outstanding) {
+            return new CostTable(this, outstanding);
+        }
+
+        private void addStop(int floor, long openTime) {
+            myStopTimes[myStopCount] = openTime;
+            myIndex.lazySet(floor,
+                    myGeneration << GENERATION_SHIFT | myStopCount);
+            myStops[myStopCount++] = floor;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package su.spb.den;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rolling model of the hall call frequency per floor and time of day.
+ * <p>
+ * The day is split into slots, each slot counts the calls per floor. A slot
+ * is stamped with the day of its counts: when the slot is entered on a later
+ * day its counts are halved for each day passed, so the recent days weigh
+ * more. The demand at a time is the sum of the counts of the previous, the
+ * current and the next slots: the previous one is the traffic of the last
+ * minutes, the next one is the traffic expected soon.
+ * <p>
+ * The counts may be updated and read from any thread. A call counted while
+ * its slot is being halved may be lost: the model is an estimate.
+ */
+class DemandModel {
+
+    static final long SLOT_TIME = TimeUnit.MINUTES.toMillis(15);
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final int SLOTS = (int) (DAY / SLOT_TIME);
+
+    private final int myFloors;
+
+    /**
+     * The offset of the local time of day from the scheduler time.
+     */
+    private final long myOffset;
+
+    private final AtomicIntegerArray myCounts;
+
+    private final AtomicLongArray myDays;
+
+    DemandModel(int floors, long offset) {
+        myFloors = floors;
+        myOffset = offset;
+        myCounts = new AtomicIntegerArray(SLOTS * (floors + 1));
+        myDays = new AtomicLongArray(SLOTS);
+    }
+
+    /**
+     * Counts the hall call from the {@code floor} at the scheduler
+     * {@code time}.
+     */
+    void record(int floor, long time) {
+        long local = time + myOffset;
+        int slot = getSlot(local);
+        long day = Math.floorDiv(local, DAY);
+        long stamp = myDays.get(slot);
+        if (stamp < day && myDays.compareAndSet(slot, stamp, day)) {
+            int shift = (int) Math.min(Integer.SIZE - 1, day - stamp);
+            for (int i = 0; i <= myFloors; i++) {
+                int index = slot * (myFloors + 1) + i;
+                myCounts.set(index, myCounts.get(index) >> shift);
+            }
+        }
+        myCounts.incrementAndGet(slot * (myFloors + 1) + floor);
+    }
+
+    /**
+     * Returns the demand of the {@code floor} around the scheduler
+     * {@code time}.
+     */
+    int getDemand(int floor, long time) {
+        long local = time + myOffset;
+        return getCount(floor, local - SLOT_TIME) + getCount(floor, local)
+                + getCount(floor, local + SLOT_TIME);
+    }
+
+    /**
+     * Returns {@code true} if any floor has demand around the scheduler
+     * {@code time}.
+     */
+    boolean hasDemand(long time) {
+        for (int floor = 1; floor <= myFloors; floor++) {
+            if (getDemand(floor, time) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the scheduler time of the next slot start after the
+     * {@code time}.
+     */
+    long getNextSlotTime(long time) {
+        long local = time + myOffset;
+        return (Math.floorDiv(local, SLOT_TIME) + 1) * SLOT_TIME - myOffset;
+    }
+
+    private int getCount(int floor, long local) {
+        int slot = getSlot(local);
+        long age = Math.max(0,
+                Math.floorDiv(local, DAY) - myDays.get(slot));
+        int count = myCounts.get(slot * (myFloors + 1) + floor);
+        return age >= Integer.SIZE - 1 ? 0 : count >> age;
+    }
+
+    private static int getSlot(long local) {
+        return (int) (Math.floorMod(local, DAY) / SLOT_TIME);
+    }
+}
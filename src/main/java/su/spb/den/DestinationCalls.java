@@ -0,0 +1,74 @@
+package su.spb.den;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Bit matrix of the registered destinations of a car: one bit per origin and
+ * destination floor.
+ * <p>
+ * A destination is registered when a passenger is assigned to the car and
+ * is taken when the car opens its doors at the origin floor. Passengers of
+ * the same origin and destination share one bit: they make a single car
+ * call. The bits may be changed from any thread.
+ */
+class DestinationCalls {
+
+    private final AtomicLongArray myBits;
+
+    private final int myRowWords;
+
+    DestinationCalls(int floors) {
+        myRowWords = (floors + 1 + 63) / 64;
+        myBits = new AtomicLongArray((floors + 1) * myRowWords);
+    }
+
+    void register(int from, int to) {
+        int word = from * myRowWords + (to >>> 6);
+        long bit = 1L << to;
+        while (true) {
+            long bits = myBits.get(word);
+            if ((bits & bit) != 0
+                    || myBits.compareAndSet(word, bits, bits | bit)) {
+                return;
+            }
+        }
+    }
+
+    boolean isRegistered(int from, int to) {
+        return (myBits.get(from * myRowWords + (to >>> 6)) & (1L << to)) != 0;
+    }
+
+    /**
+     * Returns {@code true} if any destination is registered for the
+     * {@code from} floor.
+     */
+    boolean hasAny(int from) {
+        int start = from * myRowWords;
+        for (int i = 0; i < myRowWords; i++) {
+            if (myBits.get(start + i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears the destinations registered for the {@code from} floor and
+     * passes them to the {@code consumer}.
+     */
+    void take(int from, IntConsumer consumer) {
+        int start = from * myRowWords;
+        for (int i = 0; i < myRowWords; i++) {
+            if (myBits.get(start + i) == 0) {
+                continue;
+            }
+            long bits = myBits.getAndSet(start + i, 0);
+            while (bits != 0) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                consumer.accept(i * 64 + bit);
+                bits &= bits - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package su.spb.den;
+
+import java.util.List;
+
+/**
+ * Assigns a destination call (the origin and the destination floors) to a
+ * car of the group.
+ * <p>
+ * The cost of a car is the time it opens its doors at the origin floor plus
+ * the cost of one more stop if the car is not going to stop at the
+ * destination after the origin yet. The extra stop delays the passengers who
+ * already wait for the car too, so its cost grows with their number. So the
+ * passengers going to the same floor are batched into the same car and trip
+ * unless another car picks them up earlier than the extra stop costs.
+ * <p>
+ * The energy of the move to the origin floor is weighted the same way as
+ * by the {@link EtaStrategy}.
+ * <p>
+ * If the car capacity is limited, the cars which have room for the
+ * passenger along with the passengers already waiting for them are
+ * preferred.
+ */
+class DestinationPlanner {
+
+    int assign(int from, int to, List<ElevatorManager> cars) {
+        int result = 0;
+        long bestCost = Long.MAX_VALUE;
+        boolean bestRoom = false;
+        for (int i = 0; i < cars.size(); i++) {
+            ElevatorManager car = cars.get(i);
+            boolean room = car.hasRoom();
+            if (bestRoom && !room) {
+                continue;
+            }
+            CostTable plan = car.getCostTable();
+            long cost = car.getDispatchCost(from);
+            boolean planned = plan.isStop(to)
+                    && car.getServeTime(to) > car.getServeTime(from);
+            if (!planned && !car.hasDestination(from, to)) {
+                cost += plan.getStopCost()
+                        * (1 + car.getAssignedCount());
+            }
+            if (cost < bestCost || (room && !bestRoom)) {
+                result = i;
+                bestCost = cost;
+                bestRoom = room;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package su.spb.den;
+
+/**
+ * Type of an event reported by the elevator, the structured counterpart of
+ * the {@link OutputProvider} callbacks.
+ */
+public enum ElevatorEvent {
+    ERROR, FLOOR_PASSED, DOORS_OPENED, DOORS_CLOSING, DOORS_CLOSED, SAME_FLOOR_INSIDE
+}
@@ -0,0 +1,27 @@
+package su.spb.den;
+
+/**
+ * Receives elevator events as plain values: no strings are formatted and no
+ * objects are allocated to deliver an event.
+ */
+public interface ElevatorEventListener {
+
+    /**
+     * @param car
+     *            the index of the car
+     * @param event
+     *            the type of the event
+     * @param floor
+     *            the floor of the event, {@code 0} if the event has no floor
+     * @param message
+     *            the error message for the {@link ElevatorEvent#ERROR} event,
+     *            {@code null} otherwise
+     */
+    void onEvent(int car, ElevatorEvent event, int floor, String message);
+
+    /**
+     * Called after a batch of events has been delivered.
+     */
+    default void endOfBatch() {
+    }
+}
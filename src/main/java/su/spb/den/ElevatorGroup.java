@@ -0,0 +1,219 @@
+package su.spb.den;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Group controller of several elevator cars.
+ * <p>
+ * Each car is controlled by its own {@link ElevatorManager}, outside calls
+ * are assigned to the cars via the {@link AssignmentStrategy}. Inside calls
+ * are addressed to a specific car.
+ * <p>
+ * If the car capacity is limited, the outside calls are assigned to the cars
+ * which are not full while there are such cars, and a car which gets full
+ * gives its outside calls back to the group to reassign them.
+ * <p>
+ * If the parking is enabled, the idle cars are moved to the floors where
+ * the hall calls are expected by the {@link ParkingPolicy}.
+ */
+class ElevatorGroup {
+
+    private final List<ElevatorManager> myCars;
+
+    private final Parameters myParams;
+
+    private final AssignmentStrategy myStrategy;
+
+    private final DestinationPlanner myPlanner = new DestinationPlanner();
+
+    private final Scheduler myScheduler;
+
+    /**
+     * Parks the idle cars, {@code null} if the parking is disabled.
+     */
+    private final ParkingPolicy myParking;
+
+    private volatile boolean isShutdown;
+
+    /**
+     * Creates a group with real time scheduling via the shared scheduler.
+     *
+     * @param providers
+     *            creates an output provider for the car by its index
+     */
+    ElevatorGroup(Parameters params, IntFunction<OutputProvider> providers) {
+        this(params, providers, HashedWheelScheduler.shared());
+    }
+
+    /**
+     * Creates a group which uses the given {@code scheduler} for all its
+     * cars. The scheduler is owned by the caller.
+     */
+    ElevatorGroup(Parameters params, IntFunction<OutputProvider> providers,
+            Scheduler scheduler) {
+        myParams = params;
+        myScheduler = scheduler;
+        myStrategy = AssignmentStrategy.forName(params.getStrategy());
+        List<ElevatorManager> cars = new ArrayList<>(params.getCars());
+        for (int i = 0; i < params.getCars(); i++) {
+            ElevatorManager car = new ElevatorManager(params,
+                    providers.apply(i), scheduler);
+            if (params.getCapacity() > 0 && params.getCars() > 1) {
+                int index = i;
+                car.setBypassListener(floor -> reassign(index, floor));
+            }
+            cars.add(car);
+        }
+        myCars = Collections.unmodifiableList(cars);
+        if (params.isParkingEnabled()) {
+            myParking = new ParkingPolicy(params, myCars, scheduler);
+            for (int i = 0; i < myCars.size(); i++) {
+                int index = i;
+                myCars.get(i).setIdleListener(() -> myParking.carIdle(index));
+            }
+        } else {
+            myParking = null;
+        }
+    }
+
+    List<ElevatorManager> getCars() {
+        return myCars;
+    }
+
+    Scheduler getScheduler() {
+        return myScheduler;
+    }
+
+    /**
+     * Assigns the outside call to one of the cars. The floor is validated
+     * before the assignment, an invalid floor is reported by the first car.
+     *
+     * @return the index of the car which serves the call, {@code -1} if the
+     *         floor is invalid
+     */
+    int callOutside(int floorNumber) {
+        if (!myCars.get(0).validateFloor(floorNumber)) {
+            return -1;
+        }
+        callMade(floorNumber);
+        int car = assign(floorNumber, -1);
+        myCars.get(car).callOutside(floorNumber);
+        return car;
+    }
+
+    /**
+     * Assigns the outside call given up by the full {@code car} to another
+     * car. The call goes back to the same car if all the others are full.
+     */
+    private void reassign(int car, int floorNumber) {
+        myCars.get(assign(floorNumber, car)).callOutside(floorNumber);
+    }
+
+    /**
+     * Returns the car for the outside call: the strategy chooses from the
+     * cars which are not full except the {@code excluded} one.
+     */
+    private int assign(int floorNumber, int excluded) {
+        if (myCars.size() == 1) {
+            return 0;
+        }
+        int available = 0;
+        for (int i = 0; i < myCars.size(); i++) {
+            if (i != excluded && !myCars.get(i).isFull()) {
+                available++;
+            }
+        }
+        if (available == myCars.size()) {
+            return myStrategy.assign(floorNumber, myCars, myParams);
+        } else if (available == 0) {
+            return excluded < 0
+                    ? myStrategy.assign(floorNumber, myCars, myParams)
+                    : excluded;
+        }
+        List<ElevatorManager> candidates = new ArrayList<>(available);
+        int[] indices = new int[available];
+        for (int i = 0; i < myCars.size(); i++) {
+            if (i != excluded && !myCars.get(i).isFull()) {
+                indices[candidates.size()] = i;
+                candidates.add(myCars.get(i));
+            }
+        }
+        return indices[myStrategy.assign(floorNumber, candidates, myParams)];
+    }
+
+    /**
+     * Assigns the destination call to one of the cars: the car picks the
+     * passenger up at the {@code from} floor and takes the passenger to the
+     * {@code to} floor without a separate inside call. Both floors are
+     * validated before the planning like the floor of the outside call.
+     *
+     * @return the index of the car which serves the call, {@code -1} if a
+     *         floor is invalid
+     */
+    int callDestination(int from, int to) {
+        if (!myCars.get(0).validateFloor(from)
+                || !myCars.get(0).validateFloor(to)) {
+            return -1;
+        }
+        callMade(from);
+        int car = myCars.size() == 1 ? 0 : myPlanner.assign(from, to, myCars);
+        myCars.get(car).callDestination(from, to);
+        return car;
+    }
+
+    private void callMade(int floorNumber) {
+        if (myParking != null) {
+            myParking.callMade(floorNumber);
+        }
+    }
+
+    void callInside(int car, int floorNumber) {
+        myCars.get(car).callInside(floorNumber);
+    }
+
+    /**
+     * Returns the metrics of all the cars merged together or {@code null} if
+     * the metrics are disabled.
+     */
+    ElevatorMetrics getMetrics() {
+        if (!myParams.isMetricsEnabled()) {
+            return null;
+        }
+        return ElevatorMetrics.merge(myCars.stream()
+                .map(ElevatorManager::getMetrics).collect(Collectors.toList()),
+                myParams.getFloorNumbers());
+    }
+
+    /**
+     * Sends the formatted metrics of the group to the {@code sink} every
+     * {@code period} milliseconds until the group is shut down.
+     */
+    void dumpMetrics(long period, Consumer<String> sink) {
+        if (!myParams.isMetricsEnabled()) {
+            return;
+        }
+        myScheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!isShutdown) {
+                    sink.accept(getMetrics().format(myScheduler.now()));
+                    myScheduler.schedule(this, period);
+                }
+            }
+        }, period);
+    }
+
+    void shutdown() {
+        isShutdown = true;
+        if (myParking != null) {
+            myParking.shutdown();
+        }
+        myCars.forEach(ElevatorManager::shutdown);
+    }
+}
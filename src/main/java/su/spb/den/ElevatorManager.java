@@ -1,64 +1,682 @@
 package su.spb.den;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
 
 class ElevatorManager {
 
-    private final BlockingQueue<Command> myCommandQueue = new LinkedBlockingQueue<>();
+    /**
+     * The weight of the latest observed dwell time is 1 / DWELL_SMOOTHING.
+     */
+    private static final int DWELL_SMOOTHING = 4;
+
+    private static final long NO_EXCHANGE = Long.MIN_VALUE;
+
+    private final IngestionQueue myCommandQueue;
+
+    /**
+     * Meta commands are never rejected, so they are not limited by the
+     * command queue capacity. There are only few of them per trip. The car
+     * calls which the car makes itself for the accepted destination calls go
+     * here as well.
+     */
+    private final Queue<Command> myMetaQueue = new ConcurrentLinkedQueue<>();
+
+    private final PendingCalls myPendingCalls;
+
+    private final DestinationCalls myDestinations;
+
+    /**
+     * The number of passengers who have made the destination calls and wait
+     * for the car per origin floor.
+     */
+    private final AtomicIntegerArray myAssignedCounts;
+
+    private final AtomicInteger myAssignedCount = new AtomicInteger();
+
+    /**
+     * Makes the car call of a registered destination, called by the
+     * dispatcher when the doors are opened at the origin floor. The call
+     * bypasses the overload policy: the passenger has been accepted already.
+     */
+    private final IntConsumer myBoarding = floor -> {
+        Command command = new InsideCall(floor);
+        if (accept(command)) {
+            post(command);
+        }
+    };
+
+    /**
+     * The metrics of the car, {@code null} if they are disabled.
+     */
+    private final ElevatorMetrics myMetrics;
 
     private final Parameters myParams;
 
-    private final DispatcherThread myDispatcherThread = new DispatcherThread();
+    private final DispatcherThread myDispatcherThread;
 
-    private final Timer myTimer = new Timer();
+    private final Scheduler myScheduler;
 
     private final OutputProvider myOutputProvider;
 
+    private final AtomicBoolean isDrainScheduled = new AtomicBoolean();
+
+    private final Runnable myDrainTask = this::drainCommands;
+
+    private int myCurrentFloor = 1;
+
+    private boolean isElevatorAwaiting = true;
+
+    private final CallQueue myInternalQueue;
+
+    /**
+     * The trip which is in progress, {@code null} if the elevator doesn't
+     * move. Written by the dispatcher only, read by any thread for the
+     * position.
+     */
+    private volatile Trip myTrip;
+
+    /**
+     * The trip which has opened its doors and is not completed yet,
+     * {@code null} if there is no such trip. Written by the dispatcher only.
+     */
+    private volatile Trip myFinishingTrip;
+
+    /**
+     * Builds the cost tables, accessed by the dispatcher only.
+     */
+    private final CostTable.Builder myCostBuilder;
+
+    /**
+     * The latest state of the car. Published by the dispatcher only, may be
+     * read from any thread.
+     */
+    private volatile CarState myState;
+
+    // accessed by the dispatcher only
+    private long myStateSequence;
+
+    /**
+     * The last floor the elevator has been seen at. May be read from any
+     * thread.
+     */
+    private volatile int myPosition = 1;
+
+    /**
+     * The floor of the command which is executed at the moment. May be read
+     * from any thread.
+     */
+    private volatile int myTargetFloor = 1;
+
+    /**
+     * The number of accepted user commands which are not completed yet.
+     */
+    private final AtomicInteger myOutstandingCount = new AtomicInteger();
+
+    /**
+     * The number of passengers in the car.
+     */
+    private final AtomicInteger myLoad = new AtomicInteger();
+
+    private final int myCapacity;
+
+    /**
+     * The time a passenger takes to board or to alight in milliseconds.
+     */
+    private final long myBoardTime;
+
+    /**
+     * The time the doors stay open at a stop in milliseconds, learned from
+     * the stops where the passengers have been reported. Written by the
+     * trips of the car, one at a time.
+     */
+    private volatile long myDwellTime;
+
+    private final long myMinDwellTime;
+
+    private final EnergyModel myEnergyModel;
+
+    /**
+     * The milliseconds of the wait a watt-hour is worth in the dispatch
+     * cost.
+     */
+    private final double myEnergyWeight;
+
+    private final LongAdder myBypassedCount = new LongAdder();
+
+    /**
+     * Receives the floors of the outside calls which the full car has given
+     * up, {@code null} if the car serves all its calls.
+     */
+    private volatile IntConsumer myBypassListener;
+
+    /**
+     * Is notified when the car has completed all its commands, may be
+     * {@code null}.
+     */
+    private volatile Runnable myIdleListener;
+
     ElevatorManager(Parameters params) {
         this(params, new OutputProviderImpl());
     }
 
     ElevatorManager(Parameters params, OutputProvider provider) {
+        this(params, provider, HashedWheelScheduler.shared());
+    }
+
+    /**
+     * Creates a manager which uses the given {@code scheduler}.
+     * <p>
+     * The scheduler is not shut down along with the manager: it's owned by
+     * the caller.
+     */
+    ElevatorManager(Parameters params, OutputProvider provider,
+            Scheduler scheduler) {
         myParams = params;
         myOutputProvider = provider;
-        myDispatcherThread.setDaemon(true);
-        myDispatcherThread.start();
+        myScheduler = scheduler;
+        myInternalQueue = CallQueue.forPolicy(params.getPolicy());
+        myPendingCalls = new PendingCalls(params.getFloorNumbers());
+        myDestinations = new DestinationCalls(params.getFloorNumbers());
+        myAssignedCounts = new AtomicIntegerArray(
+                params.getFloorNumbers() + 1);
+        myCapacity = params.getCapacity();
+        myBoardTime = (long) (params.getBoardTime() * 1000);
+        myDwellTime = params.getEntranceTime() * 1000;
+        myMinDwellTime = (long) (params.getMinDwellTime() * 1000);
+        myEnergyModel = params.getEnergyModel();
+        myEnergyWeight = params.getEnergyWeight() * 1000;
+        myMetrics = params.isMetricsEnabled()
+                ? new ElevatorMetrics(params.getFloorNumbers(),
+                        scheduler.now())
+                : null;
+        myCostBuilder = new CostTable.Builder(params);
+        myState = new CarState(0, scheduler.now(), myCurrentFloor,
+                myCurrentFloor, CarState.Direction.NONE, CarState.Doors.CLOSED,
+                0, 0, 0, myCostBuilder.start(scheduler.now(), myCurrentFloor)
+                        .build(0));
+        myCommandQueue = new IngestionQueue(params.getQueueCapacity(),
+                params.getOverloadPolicy(), params.getBlockTime());
+        if (scheduler.isEventLoop()) {
+            myDispatcherThread = null;
+        } else {
+            myDispatcherThread = new DispatcherThread();
+            myDispatcherThread.setDaemon(true);
+            myDispatcherThread.start();
+        }
     }
 
     protected OutputProvider getOutputProvider() {
         return myOutputProvider;
     }
 
+    int getPosition() {
+        Trip trip = myTrip;
+        return trip == null ? myPosition
+                : trip.getPosition(myScheduler.now());
+    }
+
+    int getTargetFloor() {
+        return myTargetFloor;
+    }
+
+    /**
+     * Returns the time when the car is able to open its doors at the
+     * {@code floor} if the call is assigned to the car now.
+     */
+    long getServeTime(int floor) {
+        return getCostTable().getServeTime(floor, getOutstandingCount());
+    }
+
+    /**
+     * Returns the cost of the assignment of a call for the {@code floor} to
+     * the car: the time the car is able to open its doors at the floor plus
+     * the weighted energy of the extra move if the floor is not a stop of the
+     * car yet.
+     */
+    long getDispatchCost(int floor) {
+        CostTable plan = getCostTable();
+        long cost = plan.getServeTime(floor, getOutstandingCount());
+        if (myEnergyWeight > 0 && !plan.isStop(floor)) {
+            cost += (long) (myEnergyWeight * myEnergyModel
+                    .getMoveEnergy(Math.abs(plan.getLastFloor() - floor)));
+        }
+        return cost;
+    }
+
+    CostTable getCostTable() {
+        return myState.getPlan();
+    }
+
+    /**
+     * Returns the state of the car at its last transition. The method doesn't
+     * lock anything, so it may be polled at any rate.
+     */
+    CarState getState() {
+        return myState;
+    }
+
+    int getOutstandingCount() {
+        return myOutstandingCount.get();
+    }
+
+    int getLoad() {
+        return myLoad.get();
+    }
+
+    boolean isFull() {
+        return myCapacity > 0 && myLoad.get() >= myCapacity;
+    }
+
+    /**
+     * Returns {@code true} if the car has room for one more passenger along
+     * with the passengers who wait for it.
+     */
+    boolean hasRoom() {
+        return myCapacity == 0
+                || myLoad.get() + myAssignedCount.get() < myCapacity;
+    }
+
+    /**
+     * Returns the number of outside calls which the full car has given up.
+     */
+    long getBypassedCount() {
+        return myBypassedCount.sum();
+    }
+
+    /**
+     * Sets the listener which takes the outside calls the full car gives up
+     * to serve them by another car.
+     */
+    void setBypassListener(IntConsumer listener) {
+        myBypassListener = listener;
+    }
+
+    /**
+     * Sets the listener which is notified by the dispatcher when the car has
+     * completed all its commands, it may {@link #park(int) park} the car.
+     */
+    void setIdleListener(Runnable listener) {
+        myIdleListener = listener;
+    }
+
+    /**
+     * Moves the idle car to the {@code floor} without opening the doors. The
+     * car stays if it has got a command meanwhile, and the parking trip is
+     * shortened to serve a command on its way.
+     */
+    void park(int floor) {
+        if (validateFloor(floor)) {
+            post(new Park(floor));
+        }
+    }
+
+    /**
+     * Reports the passengers who have alighted and boarded at the opened
+     * doors. The doors stay open until all of them pass one by one and are
+     * closed early if nobody passes: not earlier than the minimum dwell time
+     * after they have been opened. The report is ignored if the doors are
+     * already closing.
+     * <p>
+     * Negative counts are reported as an error. No more passengers alight
+     * than the car carries and no more board than the capacity allows: the
+     * others stay outside.
+     */
+    void exchange(int alighted, int boarded) {
+        if (alighted < 0 || boarded < 0) {
+            error(String.format(
+                    "The passenger counts %d and %d cannot be negative",
+                    alighted, boarded));
+            return;
+        }
+        int load;
+        int passed;
+        int next;
+        do {
+            load = myLoad.get();
+            int out = Math.min(alighted, load);
+            int in = myCapacity == 0 ? boarded
+                    : Math.max(0, Math.min(boarded, myCapacity - load + out));
+            passed = out + in;
+            next = load - out + in;
+        } while (!myLoad.compareAndSet(load, next));
+        Trip trip = myTrip;
+        if (trip == null) {
+            trip = myFinishingTrip;
+        }
+        if (trip != null) {
+            trip.passengersExchanged(passed * myBoardTime, myScheduler.now());
+        }
+    }
+
+    /**
+     * Returns the time the doors stay open at a stop unless the passengers
+     * are reported, in milliseconds.
+     */
+    long getDwellTime() {
+        return myDwellTime;
+    }
+
+    boolean isIdle() {
+        return getOutstandingCount() == 0;
+    }
+
+    /**
+     * Returns the metrics of the car or {@code null} if the metrics are
+     * disabled.
+     */
+    ElevatorMetrics getMetrics() {
+        return myMetrics;
+    }
+
+    int getQueueDepth() {
+        return myCommandQueue.getDepth();
+    }
+
+    int getMaxQueueDepth() {
+        return myCommandQueue.getMaxDepth();
+    }
+
+    long getRejectedCount() {
+        return myCommandQueue.getRejectedCount();
+    }
+
+    /**
+     * Returns the number of calls which have been dropped because the same
+     * call is already pending.
+     */
+    long getCoalescedCount() {
+        return myPendingCalls.getCoalescedCount();
+    }
+
     void callOutside(int floorNumber) {
         if (validateFloor(floorNumber)) {
-            if (!myCommandQueue.offer(new OutsideCall(floorNumber))) {
-                commandQueueOverload();
-            }
+            submit(new OutsideCall(floorNumber));
         }
     }
 
     void callInside(int floorNumber) {
         if (validateFloor(floorNumber)) {
-            if (!myCommandQueue.offer(new InsideCall(floorNumber))) {
-                commandQueueOverload();
-            }
+            submit(new InsideCall(floorNumber));
+        }
+    }
+
+    /**
+     * Calls the car to the {@code from} floor for a passenger who goes to the
+     * {@code to} floor. The car call to the destination is made by the car
+     * itself when it opens the doors at the {@code from} floor.
+     */
+    void callDestination(int from, int to) {
+        if (!validateFloor(from) || !validateFloor(to)) {
+            return;
+        }
+        if (from == to) {
+            getOutputProvider().sameFloorInside(to);
+            return;
         }
+        // the destination has to be registered before the hall call so the
+        // doors opened for a coalesced hall call take it
+        myDestinations.register(from, to);
+        myAssignedCounts.incrementAndGet(from);
+        myAssignedCount.incrementAndGet();
+        submit(new OutsideCall(from));
+    }
+
+    /**
+     * Returns {@code true} if a passenger from the {@code from} floor to the
+     * {@code to} floor is already assigned to the car and waits for it.
+     */
+    boolean hasDestination(int from, int to) {
+        return myDestinations.isRegistered(from, to);
+    }
+
+    /**
+     * Returns the number of passengers who have made the destination calls
+     * and wait for the car.
+     */
+    int getAssignedCount() {
+        return myAssignedCount.get();
     }
 
     void shutdown() {
-        myDispatcherThread.stop.set(true);
-        myDispatcherThread.interrupt();
-        myTimer.cancel();
+        if (myDispatcherThread != null) {
+            myDispatcherThread.stop.set(true);
+            myDispatcherThread.interrupt();
+        }
+    }
+
+    private void submit(Command command) {
+        if (!accept(command)) {
+            return;
+        }
+        boolean inside = command.isInside();
+        boolean mayBlock = !isDispatchThread() && !myScheduler.isVirtual();
+        IngestionQueue.Result result = myCommandQueue.offer(command,
+                mayBlock);
+        if (result == IngestionQueue.Result.ACCEPTED) {
+            wakeUpDispatcher();
+        } else {
+            myOutstandingCount.decrementAndGet();
+            myPendingCalls.unmark(command.getCommandFloor(), inside);
+            if (myMetrics != null) {
+                myMetrics.callCancelled(command.getCommandFloor(), inside);
+            }
+            commandQueueOverload();
+        }
     }
 
-    private boolean validateFloor(int floorNumber) {
+    /**
+     * Counts the {@code command} as outstanding unless the same call is
+     * already pending.
+     *
+     * @return {@code false} if the command is coalesced with the pending call
+     */
+    private boolean accept(Command command) {
+        boolean inside = command.isInside();
+        if (!myPendingCalls.mark(command.getCommandFloor(), inside)) {
+            return false;
+        }
+        myOutstandingCount.incrementAndGet();
+        if (myMetrics != null) {
+            myMetrics.callAccepted(command.getCommandFloor(), inside,
+                    myScheduler.now());
+            command.setSubmitTime(System.nanoTime());
+        }
+        return true;
+    }
+
+    private void post(Command command) {
+        myMetaQueue.add(command);
+        wakeUpDispatcher();
+    }
+
+    private void wakeUpDispatcher() {
+        if (myDispatcherThread == null) {
+            if (isDrainScheduled.compareAndSet(false, true)) {
+                myScheduler.schedule(myDrainTask, 0);
+            }
+        } else if (myDispatcherThread.isParked) {
+            LockSupport.unpark(myDispatcherThread);
+        }
+    }
+
+    /**
+     * Returns the next command, the meta commands go first: they are posted
+     * by the trips and the served commands and mustn't wait behind a flood
+     * of the user commands.
+     */
+    private Command nextCommand() {
+        Command command = myMetaQueue.poll();
+        return command == null ? myCommandQueue.poll() : command;
+    }
+
+    private void drainCommands() {
+        isDrainScheduled.set(false);
+        Command command;
+        while ((command = nextCommand()) != null) {
+            dispatch(command);
+        }
+    }
+
+    private void dispatch(Command command) {
+        assert isDispatchThread();
+
+        if (myMetrics != null && !(command instanceof MetaCommand)) {
+            myMetrics.commandDispatched(command.getSubmitTime(),
+                    myCommandQueue.getDepth(), myInternalQueue.size());
+        }
+        boolean executeNow = command instanceof MetaCommand;
+        executeNow = executeNow
+                || (isElevatorAwaiting && myInternalQueue.isEmpty());
+        if (executeNow) {
+            command.execute(myCurrentFloor);
+        } else if (!stopOnTheWay(command) && !serveAtDoors(command)) {
+            myInternalQueue.add(command);
+        }
+        publishState();
+    }
+
+    /**
+     * Publishes the state of the car along with its plan: the trip in
+     * progress and then the queued commands in the order of the scheduling
+     * policy.
+     */
+    private void publishState() {
+        assert isDispatchThread();
+
+        long now = myScheduler.now();
+        int outstanding = myOutstandingCount.get();
+        Trip trip = myTrip != null ? myTrip : myFinishingTrip;
+        myCostBuilder.dwell(myDwellTime).start(now, myCurrentFloor);
+        int floor = myCurrentFloor;
+        int position = myCurrentFloor;
+        CarState.Direction direction = CarState.Direction.NONE;
+        CarState.Doors doors = CarState.Doors.CLOSED;
+        if (trip != null) {
+            floor = trip.addTo(myCostBuilder, now);
+            position = trip.getPosition(now);
+            doors = trip.getDoors();
+            if (doors == CarState.Doors.CLOSED) {
+                direction = trip.getDirection();
+            }
+        }
+        myInternalQueue.forEachStop(floor, myCostBuilder);
+        myState = new CarState(++myStateSequence, now, position,
+                myTargetFloor, direction, doors, myCommandQueue.getDepth(),
+                outstanding, myLoad.get(), myCostBuilder.build(outstanding));
+    }
+
+    /**
+     * Publishes the state after the trip transition which is not followed by
+     * a meta command.
+     */
+    private void tripStateChanged() {
+        if (isDispatchThread()) {
+            publishState();
+        } else {
+            post(new StateChanged());
+        }
+    }
+
+    /**
+     * Shortens the current trip to stop at the {@code command} floor if the
+     * elevator is going to pass this floor.
+     * <p>
+     * The command of the shortened trip is returned to the internal queue.
+     *
+     * @return {@code true} if the trip has been shortened
+     */
+    private boolean stopOnTheWay(Command command) {
+        assert isDispatchThread();
+
+        Trip trip = myTrip;
+        if (trip == null || !(command instanceof AbstractCommand)
+                || (!command.isInside() && isFull())) {
+            return false;
+        }
+        Command replaced = trip.stopAt(command, myScheduler.now());
+        if (replaced == null) {
+            return false;
+        }
+        if (!(replaced instanceof Park)) {
+            myInternalQueue.add(replaced);
+        }
+        myTargetFloor = command.getCommandFloor();
+        return true;
+    }
+
+    /**
+     * Serves the {@code command} by the finishing trip if the command is for
+     * the trip floor: at once if the doors are open, the closing doors are
+     * opened again.
+     *
+     * @return {@code true} if the command is served by the finishing trip
+     */
+    private boolean serveAtDoors(Command command) {
+        assert isDispatchThread();
+
+        Trip trip = myFinishingTrip;
+        int floor = command.getCommandFloor();
+        if (trip == null || !(command instanceof AbstractCommand)
+                || trip.getFloor() != floor
+                || (!command.isInside() && isFull())) {
+            return false;
+        }
+        long now = myScheduler.now();
+        TripPhase phase = trip.reopen(now);
+        if (phase == TripPhase.OPENED) {
+            myInternalQueue.add(command);
+            servedAtFloor(floor);
+            if (myMetrics != null) {
+                myMetrics.doorsOpened(floor, now);
+            }
+            return true;
+        } else if (phase == TripPhase.CLOSING) {
+            // the command is served when the doors are opened
+            myInternalQueue.add(command);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the commands for the {@code floor} the doors are opened at.
+     */
+    private void servedAtFloor(int floor) {
+        myPendingCalls.clearFloor(floor);
+        int removed = myInternalQueue.removeFloor(floor);
+        myOutstandingCount.addAndGet(-removed);
+        myDestinations.take(floor, myBoarding);
+        myAssignedCount.addAndGet(-myAssignedCounts.getAndSet(floor, 0));
+    }
+
+    /**
+     * Updates the dwell time by the {@code observed} one.
+     */
+    private void learnDwell(long observed) {
+        long dwell = myDwellTime;
+        myDwellTime = dwell + (observed - dwell) / DWELL_SMOOTHING;
+    }
+
+    private boolean isDispatchThread() {
+        if (myDispatcherThread == null) {
+            return myScheduler.inEventLoop();
+        }
+        return myDispatcherThread == Thread.currentThread();
+    }
+
+    /**
+     * Checks the {@code floorNumber} of a call, an invalid floor is reported
+     * via the output provider of the car.
+     */
+    boolean validateFloor(int floorNumber) {
         if (floorNumber > myParams.getFloorNumbers()) {
             error(String.format("The input floor value '%d' is too big",
                     floorNumber));
@@ -98,28 +716,21 @@ class ElevatorManager {
         private final AtomicReference<Boolean> stop = new AtomicReference<Boolean>(
                 false);
 
-        private int myCurrentFloor = 1;
-
-        private boolean isElevatorAwaiting = true;
-
-        private Queue<Command> myInternalQueue = new PriorityQueue<>();
+        private volatile boolean isParked;
 
         @Override
         public void run() {
             while (!stop.get()) {
-                try {
-                    Command command = myCommandQueue.take();
-                    boolean executeNow = command instanceof MetaCommand;
-                    executeNow = executeNow || (isElevatorAwaiting
-                            && myInternalQueue.isEmpty());
-                    if (executeNow) {
-                        command.execute(myCurrentFloor);
-                    } else {
-                        myInternalQueue.add(command);
-                    }
-                } catch (InterruptedException e) {
+                Command command = nextCommand();
+                if (command != null) {
+                    dispatch(command);
                     continue;
                 }
+                isParked = true;
+                if (myCommandQueue.isEmpty() && myMetaQueue.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                isParked = false;
             }
         }
     }
@@ -132,20 +743,70 @@ class ElevatorManager {
      */
     private class CommandCompleted extends Command implements MetaCommand {
 
+        /**
+         * {@code true} if the completed trip has only parked the car, there
+         * is no user command to complete.
+         */
+        private final boolean isParking;
+
         CommandCompleted(int floor) {
+            this(floor, false);
+        }
+
+        CommandCompleted(int floor, boolean parking) {
             super(floor);
+            isParking = parking;
         }
 
         @Override
         void execute(int currentFloor) {
-            assert myDispatcherThread == Thread.currentThread();
+            assert isDispatchThread();
+
+            myTrip = null;
+            myFinishingTrip = null;
+            myCurrentFloor = getCommandFloor();
+            myPosition = myCurrentFloor;
+            myTargetFloor = myCurrentFloor;
+            if (!isParking) {
+                myOutstandingCount.decrementAndGet();
+            }
+            isElevatorAwaiting = true;
+            Command next;
+            while ((next = myInternalQueue.poll(getCommandFloor())) != null) {
+                if (!bypass(next)) {
+                    next.execute(getCommandFloor());
+                    break;
+                }
+            }
+            Runnable listener = myIdleListener;
+            if (listener != null && !isParking && isElevatorAwaiting) {
+                listener.run();
+            }
+        }
 
-            Queue<Command> queue = myDispatcherThread.myInternalQueue;
-            myDispatcherThread.myCurrentFloor = getCommandFloor();
-            myDispatcherThread.isElevatorAwaiting = true;
-            if (!queue.isEmpty()) {
-                queue.poll().execute(getCommandFloor());
+        /**
+         * Gives the outside call up if the car is full and has other commands
+         * to serve, the call is passed to the bypass listener.
+         * <p>
+         * A call with registered destinations is not given up: the passengers
+         * are assigned to this car.
+         */
+        private boolean bypass(Command command) {
+            IntConsumer listener = myBypassListener;
+            int floor = command.getCommandFloor();
+            if (listener == null || command.isInside() || !isFull()
+                    || myInternalQueue.isEmpty()
+                    || myDestinations.hasAny(floor)) {
+                return false;
+            }
+            myPendingCalls.unmark(floor, false);
+            if (myMetrics != null) {
+                myMetrics.callCancelled(floor, false);
             }
+            myOutstandingCount.decrementAndGet();
+            myBypassedCount.increment();
+            listener.accept(floor);
+            return true;
         }
 
     }
@@ -156,46 +817,13 @@ class ElevatorManager {
             super(floor);
         }
 
-        long scheduleMove(int currentFloor) {
-            assert myDispatcherThread == Thread.currentThread();
+        void startTrip(int currentFloor) {
+            assert isDispatchThread();
 
-            myDispatcherThread.isElevatorAwaiting = false;
-            long floorTime = (long) ((myParams.getFloorHeight() * 1000)
-                    / myParams.getSpeed());
-            int delta = getCommandFloor() - currentFloor;
-            int sign = delta > 0 ? 1 : -1;
-
-            long latestScheduled = 0;
-            for (int i = 1; i <= Math.abs(delta); i++) {
-                latestScheduled = i * floorTime;
-                int newFloor = currentFloor + sign * i;
-                myTimer.schedule(new ElevatorTask(
-                        () -> getOutputProvider().floorPassed(newFloor)),
-                        latestScheduled);
-            }
-            return latestScheduled;
-        }
-
-        protected void scheduleDoors(long time) {
-            assert myDispatcherThread == Thread.currentThread();
-
-            long scheduledTime = time
-                    + (long) (myParams.getOpenDoorsTime() * 1000);
-            myTimer.schedule(new ElevatorTask(() -> {
-                getOutputProvider().doorsOpened();
-                myCommandQueue.add(new DoorsOpened(getCommandFloor()));
-            }), scheduledTime);
-
-            scheduledTime += myParams.getEntranceTime() * 1000;
-            myTimer.schedule(
-                    new ElevatorTask(() -> getOutputProvider().doorsClosing()),
-                    scheduledTime);
-
-            scheduledTime += myParams.getCloseDoorsTime() * 1000;
-            myTimer.schedule(new ElevatorTask(() -> {
-                getOutputProvider().doorsClosed();
-                myCommandQueue.add(new CommandCompleted(getCommandFloor()));
-            }), scheduledTime);
+            isElevatorAwaiting = false;
+            myTargetFloor = getCommandFloor();
+            myTrip = new Trip(this, currentFloor);
+            myTrip.start();
         }
 
     }
@@ -216,8 +844,7 @@ class ElevatorManager {
 
         @Override
         void execute(int currentFloor) {
-            long time = scheduleMove(currentFloor);
-            scheduleDoors(time);
+            startTrip(currentFloor);
         }
 
     }
@@ -238,21 +865,54 @@ class ElevatorManager {
             return 1;
         }
 
+        @Override
+        boolean isInside() {
+            return true;
+        }
+
         @Override
         void execute(int currentFloor) {
-            assert myDispatcherThread == Thread.currentThread();
+            assert isDispatchThread();
 
             if (getCommandFloor() == currentFloor) {
+                myPendingCalls.unmark(getCommandFloor(), true);
+                if (myMetrics != null) {
+                    myMetrics.callCancelled(getCommandFloor(), true);
+                }
                 getOutputProvider().sameFloorInside(getCommandFloor());
-                myCommandQueue.add(new CommandCompleted(getCommandFloor()));
+                post(new CommandCompleted(getCommandFloor()));
             } else {
-                long time = scheduleMove(currentFloor);
-                scheduleDoors(time);
+                startTrip(currentFloor);
             }
         }
 
     }
 
+    /**
+     * Starts the parking trip of the idle car.
+     */
+    private class Park extends Command implements MetaCommand {
+
+        Park(int floor) {
+            super(floor);
+        }
+
+        @Override
+        void execute(int currentFloor) {
+            assert isDispatchThread();
+
+            if (!isElevatorAwaiting || !myInternalQueue.isEmpty()
+                    || getOutstandingCount() > 0
+                    || getCommandFloor() == myCurrentFloor) {
+                return;
+            }
+            isElevatorAwaiting = false;
+            myTargetFloor = getCommandFloor();
+            myTrip = new Trip(this, myCurrentFloor);
+            myTrip.start();
+        }
+    }
+
     private class DoorsOpened extends Command implements MetaCommand {
 
         DoorsOpened(int floor) {
@@ -261,32 +921,381 @@ class ElevatorManager {
 
         @Override
         void execute(int currentFloor) {
-            assert myDispatcherThread == Thread.currentThread();
-
-            Iterator<Command> iterator = myDispatcherThread.myInternalQueue
-                    .iterator();
-            while (iterator.hasNext()) {
-                Command next = iterator.next();
-                if (next.getCommandFloor() == getCommandFloor()) {
-                    iterator.remove();
-                }
+            assert isDispatchThread();
+
+            // the trip is already finishing if its doors are opened again
+            if (myTrip != null) {
+                myFinishingTrip = myTrip;
+                myTrip = null;
             }
+            servedAtFloor(getCommandFloor());
+        }
+    }
+
+    private class StateChanged extends Command implements MetaCommand {
+
+        StateChanged() {
+            super(0);
+        }
+
+        @Override
+        void execute(int currentFloor) {
         }
     }
 
-    private static class ElevatorTask extends TimerTask {
+    private enum TripPhase {
+        MOVING, OPENING, OPENED, CLOSING, CLOSED
+    }
+
+    /**
+     * The move of the elevator from the start floor to the floor of the
+     * command along with the doors cycle there.
+     * <p>
+     * The trip has only one scheduled task at a time: the trip itself which
+     * handles the next event (floor passed or doors state change) and
+     * schedules the following one. So the trip may be shortened at any time
+     * while the elevator moves without cancelling anything.
+     * <p>
+     * If the output provider doesn't report the passed floors, the trip
+     * wakes up at the stop floor only and its position is computed from the
+     * time, so the cost of a trip doesn't depend on its length.
+     * <p>
+     * The times come from the {@link MotionProfile}. If shortening the trip
+     * changes the time of its next event (the car brakes earlier than
+     * planned or the floors are not reported), a new wakeup is scheduled and
+     * the previous one becomes stale: every wakeup carries the generation of
+     * the trip it's scheduled for.
+     * <p>
+     * The same way the doors close as soon as the reported passengers have
+     * passed, and the closing doors are opened again for a call at the trip
+     * floor.
+     */
+    private class Trip implements Runnable {
+
+        private final int myStartFloor;
+
+        private final long myStartTime;
+
+        private final MotionProfile myProfile;
 
-        private final Runnable myRunnable;
+        private final int mySign;
+
+        private final boolean isReported;
+
+        /**
+         * The scheduled time of the next event. Guarded by this.
+         */
+        private long myNextTime;
+
+        // guarded by this
+        private Command myCommand;
+
+        // guarded by this
+        private int myStops;
+
+        // guarded by this
+        private int myPassed;
+
+        // guarded by this
+        private TripPhase myPhase = TripPhase.MOVING;
+
+        // guarded by this
+        private long myOpenedTime;
+
+        // guarded by this
+        private long myClosingTime;
+
+        /**
+         * The time the reported passengers pass the doors by,
+         * {@link #NO_EXCHANGE} if nobody is reported at the opened doors.
+         * Guarded by this.
+         */
+        private long myExchangeEnd = NO_EXCHANGE;
+
+        /**
+         * The generation of the scheduled wakeup, it's changed when the
+         * scheduled wakeup becomes stale. The trip itself is the wakeup of
+         * the generation 0. Guarded by this.
+         */
+        private int myGeneration;
+
+        Trip(Command command, int startFloor) {
+            myCommand = command;
+            myStartFloor = startFloor;
+            myStartTime = myScheduler.now();
+            myProfile = myParams.getMotionProfile();
+            int delta = command.getCommandFloor() - startFloor;
+            mySign = delta > 0 ? 1 : -1;
+            myStops = Math.abs(delta);
+            isReported = getOutputProvider().isFloorPassedReported();
+        }
+
+        void start() {
+            if (myStops == 0) {
+                myPhase = TripPhase.OPENING;
+                myNextTime = myStartTime + getOpenDoorsTime();
+            } else {
+                myNextTime = myStartTime + myProfile.getPassTime(myStops,
+                        isReported ? 1 : myStops);
+            }
+            myScheduler.schedule(this, myNextTime - myStartTime);
+        }
+
+        /**
+         * Adds the trip to the plan.
+         *
+         * @return the floor of the trip stop
+         */
+        synchronized int addTo(CostTable.Builder builder, long now) {
+            int floor = myCommand.getCommandFloor();
+            long arrival = myStartTime + myProfile.getTravelTime(0, myStops);
+            if (myCommand instanceof Park) {
+                builder.startMove(floor, arrival);
+                return floor;
+            }
+            long open = arrival + getOpenDoorsTime();
+            long close;
+            switch (myPhase) {
+            case MOVING:
+                close = open + myDwellTime + getCloseDoorsTime();
+                break;
+            case OPENING:
+                close = myNextTime + myDwellTime + getCloseDoorsTime();
+                break;
+            case OPENED:
+                close = myNextTime + getCloseDoorsTime();
+                break;
+            default:
+                close = myNextTime;
+            }
+            builder.startTrip(floor, open, close, now);
+            return floor;
+        }
+
+        synchronized CarState.Doors getDoors() {
+            switch (myPhase) {
+            case OPENING:
+                return CarState.Doors.OPENING;
+            case OPENED:
+                return CarState.Doors.OPEN;
+            case CLOSING:
+                return CarState.Doors.CLOSING;
+            default:
+                return CarState.Doors.CLOSED;
+            }
+        }
 
-        ElevatorTask(Runnable runnable) {
-            myRunnable = runnable;
+        CarState.Direction getDirection() {
+            return mySign > 0 ? CarState.Direction.UP
+                    : CarState.Direction.DOWN;
+        }
+
+        synchronized int getFloor() {
+            return myCommand.getCommandFloor();
+        }
+
+        /**
+         * Keeps the opened doors open for the passengers who pass them for
+         * the {@code time} from now, the doors are closed when all the
+         * reported passengers have passed. The scheduled wakeup becomes stale
+         * if the closing time is changed.
+         */
+        synchronized void passengersExchanged(long time, long now) {
+            if (myPhase != TripPhase.OPENED) {
+                return;
+            }
+            myExchangeEnd = Math.max(myExchangeEnd, now + time);
+            long next = Math.max(myExchangeEnd, myOpenedTime + myMinDwellTime);
+            if (next != myNextTime) {
+                myNextTime = next;
+                myGeneration++;
+                myScheduler.schedule(new Wakeup(myGeneration), next - now);
+            }
+        }
+
+        /**
+         * Opens the closing doors again, they are opened as long as they have
+         * been closing.
+         *
+         * @return the phase of the trip before the call: the doors are
+         *         reopened if it's {@link TripPhase#CLOSING}
+         */
+        synchronized TripPhase reopen(long now) {
+            TripPhase phase = myPhase;
+            if (phase == TripPhase.CLOSING) {
+                myPhase = TripPhase.OPENING;
+                myNextTime = now + Math.min(now - myClosingTime,
+                        getOpenDoorsTime());
+                myGeneration++;
+                myScheduler.schedule(new Wakeup(myGeneration),
+                        myNextTime - now);
+            }
+            return phase;
+        }
+
+        /**
+         * Returns the floor the elevator is at or has passed last.
+         */
+        synchronized int getPosition(long now) {
+            if (myPhase != TripPhase.MOVING) {
+                return myCommand.getCommandFloor();
+            }
+            int passed = isReported ? myPassed
+                    : myProfile.getPassedFloors(myStops, now - myStartTime);
+            return myStartFloor + mySign * passed;
+        }
+
+        /**
+         * Makes the trip stop at the {@code command} floor if it's not yet
+         * passed and the elevator can still brake for it.
+         *
+         * @return the command which has been served by the trip before or
+         *         {@code null} if the trip cannot stop at the floor
+         */
+        synchronized Command stopAt(Command command, long now) {
+            if (myPhase != TripPhase.MOVING) {
+                return null;
+            }
+            int stop = (command.getCommandFloor() - myStartFloor) * mySign;
+            long elapsed = now - myStartTime;
+            int passed = Math.max(myPassed,
+                    myProfile.getPassedFloors(myStops, elapsed));
+            if (stop <= passed || stop >= myStops
+                    || !myProfile.canStopAt(stop, elapsed)) {
+                return null;
+            }
+            Command replaced = myCommand;
+            myCommand = command;
+            myStops = stop;
+            long next = myStartTime + myProfile.getPassTime(stop,
+                    isReported ? myPassed + 1 : stop);
+            if (next != myNextTime) {
+                myNextTime = next;
+                myGeneration++;
+                myScheduler.schedule(new Wakeup(myGeneration), next - now);
+            }
+            return replaced;
         }
 
         @Override
         public void run() {
-            myRunnable.run();
+            advance(0);
+        }
+
+        private void advance(int generation) {
+            TripPhase phase;
+            int floor;
+            int passed;
+            long scheduled;
+            long dwell = NO_EXCHANGE;
+            boolean parked = false;
+            synchronized (this) {
+                if (generation != myGeneration) {
+                    return;
+                }
+                scheduled = myNextTime;
+                phase = myPhase;
+                passed = myPassed;
+                if (phase == TripPhase.MOVING) {
+                    myPassed = isReported ? myPassed + 1 : myStops;
+                    floor = myStartFloor + mySign * myPassed;
+                    if (myPassed < myStops) {
+                        myNextTime = myStartTime
+                                + myProfile.getPassTime(myStops, myPassed + 1);
+                    } else if (myCommand instanceof Park) {
+                        myPhase = TripPhase.CLOSED;
+                        parked = true;
+                        passed = myPassed;
+                    } else {
+                        myPhase = TripPhase.OPENING;
+                        myNextTime += getOpenDoorsTime();
+                    }
+                } else {
+                    floor = myCommand.getCommandFloor();
+                    if (phase == TripPhase.OPENING) {
+                        myPhase = TripPhase.OPENED;
+                        myOpenedTime = scheduled;
+                        myExchangeEnd = NO_EXCHANGE;
+                        myNextTime += myDwellTime;
+                    } else if (phase == TripPhase.OPENED) {
+                        myPhase = TripPhase.CLOSING;
+                        myClosingTime = scheduled;
+                        if (myExchangeEnd != NO_EXCHANGE) {
+                            dwell = scheduled - myOpenedTime;
+                        }
+                        myNextTime += getCloseDoorsTime();
+                    } else {
+                        myPhase = TripPhase.CLOSED;
+                    }
+                }
+            }
+
+            long now = myScheduler.now();
+            if (myMetrics != null) {
+                myMetrics.timerFired(scheduled, now);
+            }
+            switch (phase) {
+            case MOVING:
+                myPosition = floor;
+                getOutputProvider().floorPassed(floor);
+                if (parked) {
+                    if (myMetrics != null) {
+                        myMetrics.parkingCompleted(passed,
+                                myEnergyModel.getMoveEnergy(passed));
+                    }
+                    post(new CommandCompleted(floor, true));
+                    return;
+                }
+                tripStateChanged();
+                break;
+            case OPENING:
+                if (myMetrics != null) {
+                    myMetrics.doorsOpened(floor, now);
+                }
+                getOutputProvider().doorsOpened();
+                post(new DoorsOpened(floor));
+                break;
+            case OPENED:
+                if (dwell != NO_EXCHANGE) {
+                    learnDwell(dwell);
+                }
+                getOutputProvider().doorsClosing();
+                tripStateChanged();
+                break;
+            case CLOSING:
+                if (myMetrics != null) {
+                    myMetrics.tripCompleted(passed, now - myStartTime,
+                            myEnergyModel.getMoveEnergy(passed));
+                }
+                getOutputProvider().doorsClosed();
+                post(new CommandCompleted(floor));
+                return;
+            }
+            Runnable wakeup = generation == 0 ? this : new Wakeup(generation);
+            myScheduler.schedule(wakeup, myNextTime - myScheduler.now());
+        }
+
+        private long getOpenDoorsTime() {
+            return (long) (myParams.getOpenDoorsTime() * 1000);
         }
 
+        private long getCloseDoorsTime() {
+            return (long) (myParams.getCloseDoorsTime() * 1000);
+        }
+
+        private class Wakeup implements Runnable {
+
+            private final int myWakeupGeneration;
+
+            Wakeup(int generation) {
+                myWakeupGeneration = generation;
+            }
+
+            @Override
+            public void run() {
+                advance(myWakeupGeneration);
+            }
+        }
     }
 
 }
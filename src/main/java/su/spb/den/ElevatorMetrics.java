@@ -0,0 +1,232 @@
+package su.spb.den;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of an elevator car.
+ * <p>
+ * The manager creates the metrics only if they are enabled via the
+ * parameters, otherwise there is nothing but a {@code null} check on the hot
+ * path. All the recording methods may be called from any thread. The times
+ * are in milliseconds of the scheduler time except the dispatch latency
+ * which is real time in microseconds. The energy of the moves is in
+ * watt-hours of the {@link EnergyModel}.
+ */
+class ElevatorMetrics {
+
+    private final Histogram myWaitTime = new Histogram();
+
+    private final Histogram myRideTime = new Histogram();
+
+    private final Histogram myTimerLag = new Histogram();
+
+    private final Histogram myDispatchLatency = new Histogram();
+
+    private final Histogram myCommandQueueDepth = new Histogram();
+
+    private final Histogram myInternalQueueDepth = new Histogram();
+
+    private final LongAdder myBusyTime = new LongAdder();
+
+    private final LongAdder myTrips = new LongAdder();
+
+    private final LongAdder myFloorsTravelled = new LongAdder();
+
+    private final LongAdder myParkingTrips = new LongAdder();
+
+    private final DoubleAdder myEnergy = new DoubleAdder();
+
+    private static final long NO_CALL = Long.MIN_VALUE;
+
+    /**
+     * The times the pending calls have been accepted at, indexed by the
+     * floor and the call type, {@link #NO_CALL} if there is no pending call.
+     */
+    private final AtomicLongArray myCallTimes;
+
+    private final long myStartTime;
+
+    private final int myCars;
+
+    ElevatorMetrics(int floors, long startTime) {
+        this(floors, startTime, 1);
+    }
+
+    private ElevatorMetrics(int floors, long startTime, int cars) {
+        myCallTimes = new AtomicLongArray((floors + 1) * 2);
+        for (int i = 0; i < myCallTimes.length(); i++) {
+            myCallTimes.set(i, NO_CALL);
+        }
+        myStartTime = startTime;
+        myCars = cars;
+    }
+
+    /**
+     * Merges the metrics of several cars into one.
+     */
+    static ElevatorMetrics merge(Collection<ElevatorMetrics> metrics,
+            int floors) {
+        long start = metrics.stream().mapToLong(m -> m.myStartTime).min()
+                .orElse(0);
+        ElevatorMetrics result = new ElevatorMetrics(floors, start,
+                metrics.stream().mapToInt(m -> m.myCars).sum());
+        for (ElevatorMetrics car : metrics) {
+            result.myWaitTime.add(car.myWaitTime);
+            result.myRideTime.add(car.myRideTime);
+            result.myTimerLag.add(car.myTimerLag);
+            result.myDispatchLatency.add(car.myDispatchLatency);
+            result.myCommandQueueDepth.add(car.myCommandQueueDepth);
+            result.myInternalQueueDepth.add(car.myInternalQueueDepth);
+            result.myBusyTime.add(car.myBusyTime.sum());
+            result.myTrips.add(car.myTrips.sum());
+            result.myFloorsTravelled.add(car.myFloorsTravelled.sum());
+            result.myParkingTrips.add(car.myParkingTrips.sum());
+            result.myEnergy.add(car.myEnergy.sum());
+        }
+        return result;
+    }
+
+    void callAccepted(int floor, boolean inside, long time) {
+        myCallTimes.set(getKey(floor, inside), time);
+    }
+
+    /**
+     * Records the wait time of the outside call and the ride time of the
+     * inside call for the {@code floor} if they are pending.
+     */
+    void doorsOpened(int floor, long time) {
+        long called = myCallTimes.getAndSet(getKey(floor, false), NO_CALL);
+        if (called != NO_CALL) {
+            myWaitTime.record(time - called);
+        }
+        called = myCallTimes.getAndSet(getKey(floor, true), NO_CALL);
+        if (called != NO_CALL) {
+            myRideTime.record(time - called);
+        }
+    }
+
+    /**
+     * Forgets the pending inside call which doesn't need a trip.
+     */
+    void callCancelled(int floor, boolean inside) {
+        myCallTimes.set(getKey(floor, inside), NO_CALL);
+    }
+
+    void commandDispatched(long submitNanos, int commandQueueDepth,
+            int internalQueueDepth) {
+        myDispatchLatency.record((System.nanoTime() - submitNanos) / 1000);
+        myCommandQueueDepth.record(commandQueueDepth);
+        myInternalQueueDepth.record(internalQueueDepth);
+    }
+
+    /**
+     * Records the difference between the actual and the scheduled time of a
+     * timer event.
+     */
+    void timerFired(long scheduledTime, long actualTime) {
+        myTimerLag.record(actualTime - scheduledTime);
+    }
+
+    void tripCompleted(int floors, long duration, double energy) {
+        myTrips.increment();
+        myFloorsTravelled.add(floors);
+        myBusyTime.add(duration);
+        myEnergy.add(energy);
+    }
+
+    /**
+     * Records the move of the idle car which doesn't serve any call, it
+     * doesn't make the car busy.
+     */
+    void parkingCompleted(int floors, double energy) {
+        myParkingTrips.increment();
+        myFloorsTravelled.add(floors);
+        myEnergy.add(energy);
+    }
+
+    Histogram getWaitTime() {
+        return myWaitTime;
+    }
+
+    Histogram getRideTime() {
+        return myRideTime;
+    }
+
+    Histogram getTimerLag() {
+        return myTimerLag;
+    }
+
+    Histogram getDispatchLatency() {
+        return myDispatchLatency;
+    }
+
+    Histogram getCommandQueueDepth() {
+        return myCommandQueueDepth;
+    }
+
+    Histogram getInternalQueueDepth() {
+        return myInternalQueueDepth;
+    }
+
+    long getTrips() {
+        return myTrips.sum();
+    }
+
+    long getFloorsTravelled() {
+        return myFloorsTravelled.sum();
+    }
+
+    long getParkingTrips() {
+        return myParkingTrips.sum();
+    }
+
+    /**
+     * Returns the energy of all the moves in watt-hours.
+     */
+    double getEnergy() {
+        return myEnergy.sum();
+    }
+
+    /**
+     * Returns the share of the time the cars have been busy since the
+     * metrics are created, in the range {@code [0, 1]}.
+     */
+    double getUtilisation(long now) {
+        long elapsed = (now - myStartTime) * myCars;
+        return elapsed <= 0 ? 0
+                : Math.min(1, (double) myBusyTime.sum() / elapsed);
+    }
+
+    /**
+     * Returns the human readable dump of the metrics.
+     */
+    String format(long now) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Metrics (").append(myCars).append(" car(s)):\n");
+        append(builder, "wait time, ms", myWaitTime);
+        append(builder, "ride time, ms", myRideTime);
+        append(builder, "dispatch latency, us", myDispatchLatency);
+        append(builder, "timer lag, ms", myTimerLag);
+        append(builder, "command queue depth", myCommandQueueDepth);
+        append(builder, "internal queue depth", myInternalQueueDepth);
+        builder.append(String.format(
+                "  trips: %d, parking trips: %d, floors travelled: %d,"
+                        + " energy: %.1f Wh, utilisation: %.1f%%",
+                getTrips(), getParkingTrips(), getFloorsTravelled(),
+                getEnergy(), getUtilisation(now) * 100));
+        return builder.toString();
+    }
+
+    private void append(StringBuilder builder, String name,
+            Histogram histogram) {
+        builder.append("  ").append(name).append(": ")
+                .append(histogram.format()).append('\n');
+    }
+
+    private int getKey(int floor, boolean inside) {
+        return floor * 2 + (inside ? 1 : 0);
+    }
+}
@@ -0,0 +1,41 @@
+package su.spb.den;
+
+/**
+ * Energy model of the car moves.
+ * <p>
+ * A move costs the energy of its start and stop, that is the acceleration of
+ * the car and the counterweight along with the drive losses, plus the energy
+ * per meter of the travelled height. The counterweight balances the car
+ * with an average load, so the load and the direction are not modelled: the
+ * energy depends on the number of the moves and their distance only. The
+ * doors and the standby consumption don't depend on the dispatching and are
+ * not counted.
+ * <p>
+ * The energy is in watt-hours.
+ */
+class EnergyModel {
+
+    /**
+     * The energy of the start and the stop of a move.
+     */
+    static final double START_STOP_ENERGY = 2;
+
+    /**
+     * The energy of a meter of the travelled height.
+     */
+    static final double METER_ENERGY = 0.5;
+
+    private final double myFloorEnergy;
+
+    EnergyModel(double floorHeight) {
+        myFloorEnergy = METER_ENERGY * floorHeight;
+    }
+
+    /**
+     * Returns the energy of the move of the {@code floors} distance, there is
+     * no move if the distance is {@code 0}.
+     */
+    double getMoveEnergy(int floors) {
+        return floors == 0 ? 0 : START_STOP_ENERGY + floors * myFloorEnergy;
+    }
+}
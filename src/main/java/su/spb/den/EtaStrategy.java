@@ -0,0 +1,33 @@
+package su.spb.den;
+
+import java.util.List;
+
+/**
+ * Assigns a call to the car with the smallest estimated time of arrival to
+ * the call floor.
+ * <p>
+ * The estimation is a lookup in the cost table of the car: the table is
+ * maintained by the car along with its plan, so an assignment doesn't
+ * simulate the queues of the cars. If the energy weight is set, the energy
+ * of the extra move of the car is added to the time, so a car which
+ * already stops at the floor or is close to it may be preferred to a
+ * faster one.
+ */
+class EtaStrategy implements AssignmentStrategy {
+
+    @Override
+    public int assign(int floor, List<ElevatorManager> cars,
+            Parameters params) {
+        int result = 0;
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < cars.size(); i++) {
+            long time = cars.get(i).getDispatchCost(floor);
+            if (time < bestTime) {
+                result = i;
+                bestTime = time;
+            }
+        }
+        return result;
+    }
+
+}
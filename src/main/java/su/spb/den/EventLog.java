@@ -0,0 +1,369 @@
+package su.spb.den;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongSupplier;
+
+/**
+ * Append-only binary log of the elevator calls and events.
+ * <p>
+ * Each record takes 12 bytes: the kind, the car index, the floor and the
+ * timestamp. An error record is followed by its UTF-8 message prefixed with
+ * the length, a destination call record is followed by the destination
+ * floor. The records are collected in a direct buffer and written to the
+ * file channel when the buffer is full, on {@link #endOfBatch()}, on
+ * {@link #close()} and periodically if {@link #flushEvery(Scheduler, long)}
+ * is called.
+ * <p>
+ * The log never throws from the recording methods: the first I/O error stops
+ * the recording and is rethrown by {@link #close()}.
+ */
+class EventLog implements ElevatorEventListener, Closeable {
+
+    static final int MAGIC = 0x454C4F47;
+
+    /**
+     * The version 2 adds the destination calls, the version 1 logs are read
+     * as well.
+     */
+    static final short VERSION = 2;
+
+    static final int RECORD_SIZE = 12;
+
+    static final byte CALL_OUTSIDE = 0;
+
+    static final byte CALL_INSIDE = 1;
+
+    /**
+     * The kind of the destination call record, it's out of the range of the
+     * event records.
+     */
+    static final byte CALL_DESTINATION = -1;
+
+    /**
+     * The kind of the {@link ElevatorEvent} record is this value plus the
+     * ordinal of the event.
+     */
+    static final byte EVENT_BASE = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+
+    private static final ElevatorEvent[] EVENTS = ElevatorEvent.values();
+
+    private final FileChannel myChannel;
+
+    private final ByteBuffer myBuffer = ByteBuffer
+            .allocateDirect(BUFFER_SIZE);
+
+    private final LongSupplier myClock;
+
+    private IOException myFailure;
+
+    private long myRecordCount;
+
+    private boolean isClosed;
+
+    /**
+     * Opens the log for appending, writes the header if the file is empty.
+     * A non empty file is appended only if its header is of this version.
+     *
+     * @param clock
+     *            the source of the record timestamps
+     */
+    EventLog(Path file, LongSupplier clock) throws IOException {
+        myClock = clock;
+        myChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            if (myChannel.size() == 0) {
+                myBuffer.putInt(MAGIC).putShort(VERSION);
+            } else {
+                checkHeader(file);
+            }
+        } catch (IOException e) {
+            myChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the collected records each {@code period} milliseconds of the
+     * {@code scheduler} time until the log is closed.
+     */
+    void flushEvery(Scheduler scheduler, long period) {
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (EventLog.this) {
+                    if (isClosed) {
+                        return;
+                    }
+                    flush();
+                }
+                scheduler.schedule(this, period);
+            }
+        }, period);
+    }
+
+    synchronized void callOutside(int car, int floor) {
+        put(CALL_OUTSIDE, car, floor);
+    }
+
+    synchronized void callInside(int car, int floor) {
+        put(CALL_INSIDE, car, floor);
+    }
+
+    synchronized void callDestination(int car, int from, int to) {
+        put(CALL_DESTINATION, car, from);
+        if (myFailure == null) {
+            ensure(2);
+            myBuffer.putShort((short) to);
+        }
+    }
+
+    @Override
+    public synchronized void onEvent(int car, ElevatorEvent event, int floor,
+            String message) {
+        put((byte) (EVENT_BASE + event.ordinal()), car, floor);
+        if (event == ElevatorEvent.ERROR && myFailure == null && !isClosed) {
+            byte[] bytes = String.valueOf(message)
+                    .getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(bytes.length, MAX_MESSAGE_LENGTH);
+            ensure(2 + length);
+            myBuffer.putShort((short) length).put(bytes, 0, length);
+        }
+    }
+
+    @Override
+    public synchronized void endOfBatch() {
+        flush();
+    }
+
+    /**
+     * Returns the output provider which records the events of the
+     * {@code car} and passes them to the {@code delegate}.
+     */
+    OutputProvider record(int car, OutputProvider delegate) {
+        return new EventOutput(car, this, delegate);
+    }
+
+    synchronized long getRecordCount() {
+        return myRecordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            isClosed = true;
+            myChannel.close();
+        }
+        if (myFailure != null) {
+            throw myFailure;
+        }
+    }
+
+    private static void checkHeader(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(6);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // reads the whole header
+            }
+        }
+        header.flip();
+        if (header.remaining() < 6 || header.getInt() != MAGIC) {
+            throw new IOException("Not an event log: " + file);
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Cannot append to the event log version "
+                    + version + ": " + file);
+        }
+    }
+
+    private void put(byte kind, int car, int floor) {
+        if (myFailure != null || isClosed) {
+            return;
+        }
+        ensure(RECORD_SIZE);
+        myBuffer.put(kind).put((byte) car).putShort((short) floor)
+                .putLong(myClock.getAsLong());
+        myRecordCount++;
+    }
+
+    private void ensure(int size) {
+        if (myBuffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (myFailure != null || isClosed || myBuffer.position() == 0) {
+            return;
+        }
+        myBuffer.flip();
+        try {
+            while (myBuffer.hasRemaining()) {
+                myChannel.write(myBuffer);
+            }
+        } catch (IOException e) {
+            myFailure = e;
+        }
+        myBuffer.clear();
+    }
+
+    /**
+     * Sequential reader of the log. The values of the current record are
+     * available via the getters after {@link #next()} returns {@code true}.
+     */
+    static class Reader implements Closeable {
+
+        private final FileChannel myChannel;
+
+        private final ByteBuffer myBuffer = ByteBuffer
+                .allocateDirect(BUFFER_SIZE);
+
+        private byte myKind;
+
+        private int myCar;
+
+        private int myFloor;
+
+        private long myTime;
+
+        private String myMessage;
+
+        private int myDestination;
+
+        Reader(Path file) throws IOException {
+            myChannel = FileChannel.open(file, StandardOpenOption.READ);
+            myBuffer.flip();
+            if (!fill(6)) {
+                throw new EOFException("No event log header in " + file);
+            }
+            if (myBuffer.getInt() != MAGIC) {
+                throw new IOException("Not an event log: " + file);
+            }
+            short version = myBuffer.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(
+                        "Unsupported event log version: " + version);
+            }
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return {@code false} if there are no more records
+         */
+        boolean next() throws IOException {
+            if (!fill(RECORD_SIZE)) {
+                if (myBuffer.hasRemaining()) {
+                    throw new EOFException("Truncated event log record");
+                }
+                return false;
+            }
+            myKind = myBuffer.get();
+            myCar = myBuffer.get() & 0xFF;
+            myFloor = myBuffer.getShort();
+            myTime = myBuffer.getLong();
+            myMessage = null;
+            if (myKind == CALL_DESTINATION) {
+                if (!fill(2)) {
+                    throw new EOFException("Truncated event log record");
+                }
+                myDestination = myBuffer.getShort();
+            } else if (getEvent() == ElevatorEvent.ERROR) {
+                if (!fill(2)) {
+                    throw new EOFException("Truncated event log record");
+                }
+                int length = myBuffer.getShort();
+                if (!fill(length)) {
+                    throw new EOFException("Truncated event log record");
+                }
+                byte[] bytes = new byte[length];
+                myBuffer.get(bytes);
+                myMessage = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return true;
+        }
+
+        boolean isCall() {
+            return myKind == CALL_OUTSIDE || myKind == CALL_INSIDE
+                    || myKind == CALL_DESTINATION;
+        }
+
+        boolean isInside() {
+            return myKind == CALL_INSIDE;
+        }
+
+        boolean isDestination() {
+            return myKind == CALL_DESTINATION;
+        }
+
+        /**
+         * Returns the event of the current record, {@code null} if the record
+         * is a call.
+         */
+        ElevatorEvent getEvent() {
+            int index = myKind - EVENT_BASE;
+            return index >= 0 && index < EVENTS.length ? EVENTS[index] : null;
+        }
+
+        int getCar() {
+            return myCar;
+        }
+
+        int getFloor() {
+            return myFloor;
+        }
+
+        long getTime() {
+            return myTime;
+        }
+
+        String getMessage() {
+            return myMessage;
+        }
+
+        /**
+         * Returns the destination floor of the destination call record.
+         */
+        int getDestination() {
+            return myDestination;
+        }
+
+        @Override
+        public void close() throws IOException {
+            myChannel.close();
+        }
+
+        private boolean fill(int size) throws IOException {
+            if (myBuffer.remaining() >= size) {
+                return true;
+            }
+            myBuffer.compact();
+            while (myBuffer.position() < size) {
+                if (myChannel.read(myBuffer) < 0) {
+                    break;
+                }
+            }
+            myBuffer.flip();
+            return myBuffer.remaining() >= size;
+        }
+    }
+}
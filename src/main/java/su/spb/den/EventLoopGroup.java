@@ -0,0 +1,55 @@
+package su.spb.den;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of event loop schedulers shared by many elevator managers.
+ * <p>
+ * Each manager (or group of cars) is bound to one event loop via
+ * {@link #next()}: all its timer events and command dispatching are executed
+ * in the thread of this loop. So the number of threads doesn't depend on the
+ * number of hosted buildings and the dispatcher state of each manager is
+ * still accessed by one thread only.
+ */
+class EventLoopGroup {
+
+    private final HashedWheelScheduler[] myLoops;
+
+    private final AtomicInteger myNext = new AtomicInteger();
+
+    /**
+     * Creates a group with one event loop per available processor.
+     */
+    EventLoopGroup() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    EventLoopGroup(int threads) {
+        myLoops = new HashedWheelScheduler[Math.max(threads, 1)];
+        for (int i = 0; i < myLoops.length; i++) {
+            myLoops[i] = new HashedWheelScheduler(
+                    HashedWheelScheduler.DEFAULT_TICK,
+                    HashedWheelScheduler.DEFAULT_WHEEL_SIZE, true,
+                    "elevator-loop-" + i);
+        }
+    }
+
+    /**
+     * Returns the event loop for a new manager, the loops are assigned in
+     * round robin order.
+     */
+    Scheduler next() {
+        return myLoops[Math.floorMod(myNext.getAndIncrement(),
+                myLoops.length)];
+    }
+
+    int getThreadCount() {
+        return myLoops.length;
+    }
+
+    void shutdown() {
+        for (HashedWheelScheduler loop : myLoops) {
+            loop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package su.spb.den;
+
+/**
+ * Output provider which passes the events of a car to the
+ * {@link ElevatorEventListener} and then to the delegate provider.
+ */
+class EventOutput implements OutputProvider {
+
+    private final int myCar;
+
+    private final ElevatorEventListener myListener;
+
+    private final OutputProvider myDelegate;
+
+    EventOutput(int car, ElevatorEventListener listener,
+            OutputProvider delegate) {
+        myCar = car;
+        myListener = listener;
+        myDelegate = delegate;
+    }
+
+    @Override
+    public void error(String error) {
+        myListener.onEvent(myCar, ElevatorEvent.ERROR, 0, error);
+        myDelegate.error(error);
+    }
+
+    @Override
+    public void floorPassed(int floor) {
+        myListener.onEvent(myCar, ElevatorEvent.FLOOR_PASSED, floor, null);
+        myDelegate.floorPassed(floor);
+    }
+
+    @Override
+    public void doorsOpened() {
+        myListener.onEvent(myCar, ElevatorEvent.DOORS_OPENED, 0, null);
+        myDelegate.doorsOpened();
+    }
+
+    @Override
+    public void doorsClosed() {
+        myListener.onEvent(myCar, ElevatorEvent.DOORS_CLOSED, 0, null);
+        myDelegate.doorsClosed();
+    }
+
+    @Override
+    public void doorsClosing() {
+        myListener.onEvent(myCar, ElevatorEvent.DOORS_CLOSING, 0, null);
+        myDelegate.doorsClosing();
+    }
+
+    @Override
+    public void sameFloorInside(int floor) {
+        myListener.onEvent(myCar, ElevatorEvent.SAME_FLOOR_INSIDE, floor,
+                null);
+        myDelegate.sameFloorInside(floor);
+    }
+}
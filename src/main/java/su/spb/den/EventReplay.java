@@ -0,0 +1,167 @@
+package su.spb.den;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+/**
+ * Replays the calls of an {@link EventLog} under the virtual time.
+ * <p>
+ * The calls are fed into a new {@link ElevatorGroup} with their original
+ * relative timing but without any waiting, so the recorded traffic may be
+ * reproduced with other parameters (the number of cars, the assignment
+ * strategy or the scheduling policy). Outside and destination calls are
+ * assigned to the cars again, inside calls go to the recorded car. The recorded events are not
+ * replayed: they are produced by the group.
+ */
+class EventReplay {
+
+    private final Parameters myParams;
+
+    private final IntFunction<OutputProvider> myProviders;
+
+    private final VirtualScheduler myScheduler;
+
+    private int myCallCount;
+
+    private int mySkippedCount;
+
+    private long myDuration;
+
+    private ElevatorMetrics myMetrics;
+
+    EventReplay(Parameters params, IntFunction<OutputProvider> providers) {
+        this(params, providers, new VirtualScheduler());
+    }
+
+    /**
+     * @param scheduler
+     *            the virtual time of the replay, it's shut down after the
+     *            replay
+     */
+    EventReplay(Parameters params, IntFunction<OutputProvider> providers,
+            VirtualScheduler scheduler) {
+        myParams = params;
+        myProviders = providers;
+        myScheduler = scheduler;
+    }
+
+    /**
+     * Replays the calls of the {@code log} and returns when all the calls
+     * have been served.
+     */
+    void replay(Path log) throws IOException {
+        VirtualScheduler scheduler = myScheduler;
+        ElevatorGroup group = new ElevatorGroup(myParams, myProviders,
+                scheduler);
+        try (EventLog.Reader reader = new EventLog.Reader(log)) {
+            myCallCount = 0;
+            mySkippedCount = 0;
+            if (nextCall(reader)) {
+                new Feeder(reader, group, scheduler, reader.getTime())
+                        .schedule();
+            }
+            try {
+                scheduler.run();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            myDuration = scheduler.now();
+            myMetrics = group.getMetrics();
+        } finally {
+            group.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    int getCallCount() {
+        return myCallCount;
+    }
+
+    /**
+     * Returns the number of inside calls which have been skipped since their
+     * car doesn't exist in the replayed group.
+     */
+    int getSkippedCount() {
+        return mySkippedCount;
+    }
+
+    /**
+     * Returns the virtual time in milliseconds from the first replayed call to
+     * the end of the last trip.
+     */
+    long getDuration() {
+        return myDuration;
+    }
+
+    /**
+     * Returns the metrics of the replayed group, {@code null} if the metrics
+     * are disabled.
+     */
+    ElevatorMetrics getMetrics() {
+        return myMetrics;
+    }
+
+    private static boolean nextCall(EventLog.Reader reader)
+            throws IOException {
+        while (reader.next()) {
+            if (reader.isCall()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the calls lazily: the next call is read and scheduled only when
+     * the current one is fed into the group.
+     */
+    private class Feeder implements Runnable {
+
+        private final EventLog.Reader myReader;
+
+        private final ElevatorGroup myGroup;
+
+        private final Scheduler myScheduler;
+
+        private final long myStart;
+
+        Feeder(EventLog.Reader reader, ElevatorGroup group,
+                Scheduler scheduler, long start) {
+            myReader = reader;
+            myGroup = group;
+            myScheduler = scheduler;
+            myStart = start;
+        }
+
+        @Override
+        public void run() {
+            if (myReader.isDestination()) {
+                myGroup.callDestination(myReader.getFloor(),
+                        myReader.getDestination());
+                myCallCount++;
+            } else if (!myReader.isInside()) {
+                myGroup.callOutside(myReader.getFloor());
+                myCallCount++;
+            } else if (myReader.getCar() < myGroup.getCars().size()) {
+                myGroup.callInside(myReader.getCar(), myReader.getFloor());
+                myCallCount++;
+            } else {
+                mySkippedCount++;
+            }
+            try {
+                if (nextCall(myReader)) {
+                    schedule();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void schedule() {
+            myScheduler.schedule(this, Math.max(0,
+                    myReader.getTime() - myStart - myScheduler.now()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package su.spb.den;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Serves the commands in the order they are issued, inside calls go before
+ * outside calls.
+ * <p>
+ * The inside and the outside calls are kept in two lists ordered by the
+ * command order. A command is normally issued later than the queued ones, so
+ * it's appended to the tail without any search.
+ */
+class FifoCallQueue extends FloorCallQueue {
+
+    private final Command[] myHeads = new Command[2];
+
+    private final Command[] myTails = new Command[2];
+
+    @Override
+    public Command poll(int currentFloor) {
+        Command command = myHeads[1] != null ? myHeads[1] : myHeads[0];
+        if (command != null) {
+            remove(command);
+        }
+        return command;
+    }
+
+    @Override
+    public void forEachStop(int currentFloor, IntConsumer consumer) {
+        for (int list = 1; list >= 0; list--) {
+            for (Command command = myHeads[list]; command != null;
+                    command = command.myOrderNext) {
+                consumer.accept(command.getCommandFloor());
+            }
+        }
+    }
+
+    @Override
+    void added(Command command) {
+        int list = getList(command);
+        Command prev = myTails[list];
+        while (prev != null && prev.compareTo(command) > 0) {
+            prev = prev.myOrderPrev;
+        }
+        Command next = prev == null ? myHeads[list] : prev.myOrderNext;
+        command.myOrderPrev = prev;
+        command.myOrderNext = next;
+        if (prev == null) {
+            myHeads[list] = command;
+        } else {
+            prev.myOrderNext = command;
+        }
+        if (next == null) {
+            myTails[list] = command;
+        } else {
+            next.myOrderPrev = command;
+        }
+    }
+
+    @Override
+    void removed(Command command) {
+        int list = getList(command);
+        Command prev = command.myOrderPrev;
+        Command next = command.myOrderNext;
+        if (prev == null) {
+            myHeads[list] = next;
+        } else {
+            prev.myOrderNext = next;
+        }
+        if (next == null) {
+            myTails[list] = prev;
+        } else {
+            next.myOrderPrev = prev;
+        }
+        command.myOrderPrev = null;
+        command.myOrderNext = null;
+    }
+
+    private static int getList(Command command) {
+        return command.isInside() ? 1 : 0;
+    }
+}
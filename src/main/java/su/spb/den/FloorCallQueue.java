@@ -0,0 +1,130 @@
+package su.spb.den;
+
+import java.util.Arrays;
+
+/**
+ * Base of the call queues which index the commands by their floors, so
+ * removing the commands of a floor costs the number of removed commands
+ * instead of the size of the queue.
+ * <p>
+ * The commands are linked into per floor lists in the order they are added
+ * via their own link fields, so the queue allocates nothing per command.
+ * The index grows with the highest floor seen.
+ */
+abstract class FloorCallQueue implements CallQueue {
+
+    private Command[] myHeads = new Command[32];
+
+    private Command[] myTails = new Command[32];
+
+    private int mySize;
+
+    @Override
+    public void add(Command command) {
+        int floor = command.getCommandFloor();
+        if (floor >= myHeads.length) {
+            int length = Math.max(floor + 1, myHeads.length * 2);
+            myHeads = Arrays.copyOf(myHeads, length);
+            myTails = Arrays.copyOf(myTails, length);
+        }
+        Command tail = myTails[floor];
+        command.myFloorPrev = tail;
+        command.myFloorNext = null;
+        if (tail == null) {
+            myHeads[floor] = command;
+            floorAdded(floor);
+        } else {
+            tail.myFloorNext = command;
+        }
+        myTails[floor] = command;
+        mySize++;
+        added(command);
+    }
+
+    @Override
+    public int removeFloor(int floor) {
+        if (floor < 0 || floor >= myHeads.length) {
+            return 0;
+        }
+        int removed = 0;
+        Command command = myHeads[floor];
+        while (command != null) {
+            Command next = command.myFloorNext;
+            command.myFloorPrev = null;
+            command.myFloorNext = null;
+            removed(command);
+            removed++;
+            command = next;
+        }
+        if (removed > 0) {
+            myHeads[floor] = null;
+            myTails[floor] = null;
+            mySize -= removed;
+            floorRemoved(floor);
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Returns the earliest added command of the {@code floor}, {@code null}
+     * if there is no command for the floor.
+     */
+    Command getFirst(int floor) {
+        return floor >= 0 && floor < myHeads.length ? myHeads[floor] : null;
+    }
+
+    /**
+     * Removes the {@code command} from the queue.
+     */
+    void remove(Command command) {
+        int floor = command.getCommandFloor();
+        Command prev = command.myFloorPrev;
+        Command next = command.myFloorNext;
+        if (prev == null) {
+            myHeads[floor] = next;
+        } else {
+            prev.myFloorNext = next;
+        }
+        if (next == null) {
+            myTails[floor] = prev;
+        } else {
+            next.myFloorPrev = prev;
+        }
+        command.myFloorPrev = null;
+        command.myFloorNext = null;
+        mySize--;
+        removed(command);
+        if (myHeads[floor] == null) {
+            floorRemoved(floor);
+        }
+    }
+
+    /**
+     * Called when the {@code command} is added to the queue.
+     */
+    void added(Command command) {
+    }
+
+    /**
+     * Called when the {@code command} is removed from the queue.
+     */
+    void removed(Command command) {
+    }
+
+    /**
+     * Called when the first command of the {@code floor} is added.
+     */
+    void floorAdded(int floor) {
+    }
+
+    /**
+     * Called when the last command of the {@code floor} is removed.
+     */
+    void floorRemoved(int floor) {
+    }
+}
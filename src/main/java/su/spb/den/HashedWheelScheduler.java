@@ -0,0 +1,387 @@
+package su.spb.den;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Real time scheduler based on a hashed timing wheel.
+ * <p>
+ * The wheel is an array of buckets, each bucket keeps a doubly linked list of
+ * the tasks which expire at the tick of the bucket (possibly in one of the
+ * next rounds). Scheduling and cancellation are O(1), one worker thread
+ * handles the ticks and executes expired tasks. A single scheduler is
+ * intended to be shared by all the elevator managers in the JVM, see
+ * {@link #shared()}.
+ * <p>
+ * In the event loop mode the worker executes tasks without delay as soon as
+ * possible, so the managers dispatch their commands in the worker thread
+ * instead of starting their own dispatcher threads. Any number of managers
+ * may share one event loop, see {@link EventLoopGroup}. The tasks without
+ * delay cannot be cancelled in this mode.
+ * <p>
+ * The task nodes are recycled after the task is executed or cancelled, so
+ * the wheel doesn't grow its garbage with the number of the tasks. The
+ * handle returned by {@link #schedule(Runnable, long)} is stamped with the
+ * sequence of the node: a stale handle of an executed task doesn't cancel
+ * the later task which has got the node.
+ * <p>
+ * A task which throws is reported to the uncaught exception handler of the
+ * worker thread, the worker goes on with the next tasks.
+ */
+class HashedWheelScheduler implements Scheduler {
+
+    static final int DEFAULT_TICK = 10;
+
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final Object SHARED_LOCK = new Object();
+
+    private static final Cancellable NOT_CANCELLABLE = () -> false;
+
+    private static HashedWheelScheduler shared;
+
+    private final Object myLock = new Object();
+
+    private final Node[] myWheel;
+
+    private final int myMask;
+
+    private final long myTickNanos;
+
+    private final long myStartNanos = System.nanoTime();
+
+    private final Thread myWorker;
+
+    private final boolean isEventLoop;
+
+    private volatile boolean isParked;
+
+    // guarded by myLock
+    private long myNextTick;
+
+    // guarded by myLock
+    private Node myFreeNodes;
+
+    // guarded by myLock
+    private int myPendingCount;
+
+    // guarded by myLock
+    private Node myImmediateHead;
+
+    // guarded by myLock
+    private Node myImmediateTail;
+
+    private volatile boolean isShutdown;
+
+    HashedWheelScheduler() {
+        this(DEFAULT_TICK, DEFAULT_WHEEL_SIZE, true);
+    }
+
+    /**
+     * @param tick
+     *            the tick duration in milliseconds
+     * @param wheelSize
+     *            the number of buckets, rounded up to a power of two
+     */
+    HashedWheelScheduler(long tick, int wheelSize) {
+        this(tick, wheelSize, false);
+    }
+
+    /**
+     * @param tick
+     *            the tick duration in milliseconds
+     * @param wheelSize
+     *            the number of buckets, rounded up to a power of two
+     * @param eventLoop
+     *            whether the scheduler runs in the event loop mode
+     */
+    HashedWheelScheduler(long tick, int wheelSize, boolean eventLoop) {
+        this(tick, wheelSize, eventLoop, "elevator-wheel");
+    }
+
+    HashedWheelScheduler(long tick, int wheelSize, boolean eventLoop,
+            String threadName) {
+        isEventLoop = eventLoop;
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        myWheel = new Node[size];
+        myMask = size - 1;
+        myTickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tick, 1));
+        myWorker = new Thread(this::work, threadName);
+        myWorker.setDaemon(true);
+        myWorker.start();
+    }
+
+    /**
+     * Returns the scheduler shared by all the managers which don't have an
+     * explicit scheduler.
+     */
+    static HashedWheelScheduler shared() {
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                shared = new HashedWheelScheduler();
+            }
+            return shared;
+        }
+    }
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delay) {
+        if (isEventLoop && delay <= 0) {
+            return execute(task);
+        }
+        long deadline = System.nanoTime() - myStartNanos
+                + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+        long tick = (deadline + myTickNanos - 1) / myTickNanos;
+        synchronized (myLock) {
+            Node node = allocate(task);
+            tick = Math.max(tick, myNextTick);
+            node.myRounds = (tick - myNextTick) / myWheel.length;
+            node.myBucket = (int) (tick & myMask);
+            link(node);
+            myPendingCount++;
+            return new Handle(node);
+        }
+    }
+
+    @Override
+    public boolean isEventLoop() {
+        return isEventLoop;
+    }
+
+    @Override
+    public boolean inEventLoop() {
+        return myWorker == Thread.currentThread();
+    }
+
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        LockSupport.unpark(myWorker);
+    }
+
+    /**
+     * Sets the {@code handler} of the exceptions thrown by the tasks.
+     */
+    void setErrorHandler(Thread.UncaughtExceptionHandler handler) {
+        myWorker.setUncaughtExceptionHandler(handler);
+    }
+
+    /**
+     * Returns the number of scheduled tasks which are not yet executed.
+     */
+    int getPendingCount() {
+        synchronized (myLock) {
+            return myPendingCount;
+        }
+    }
+
+    private Cancellable execute(Runnable task) {
+        synchronized (myLock) {
+            Node node = allocate(task);
+            node.isExpired = true;
+            if (myImmediateTail == null) {
+                myImmediateHead = node;
+            } else {
+                myImmediateTail.myExpired = node;
+            }
+            myImmediateTail = node;
+            myPendingCount++;
+        }
+        if (isParked) {
+            LockSupport.unpark(myWorker);
+        }
+        return NOT_CANCELLABLE;
+    }
+
+    private void work() {
+        while (!isShutdown) {
+            runAll(takeImmediate());
+            long tickTime;
+            synchronized (myLock) {
+                tickTime = myNextTick * myTickNanos;
+            }
+            long sleep = tickTime - (System.nanoTime() - myStartNanos);
+            if (sleep > 0) {
+                park(sleep);
+                continue;
+            }
+            runAll(expire());
+        }
+    }
+
+    private void park(long nanos) {
+        isParked = true;
+        try {
+            synchronized (myLock) {
+                if (myImmediateHead != null) {
+                    return;
+                }
+            }
+            LockSupport.parkNanos(nanos);
+        } finally {
+            isParked = false;
+        }
+    }
+
+    private void runAll(Node tasks) {
+        Node task = tasks;
+        while (task != null) {
+            Node next = task.myExpired;
+            try {
+                task.myTask.run();
+            } catch (Throwable e) {
+                try {
+                    myWorker.getUncaughtExceptionHandler()
+                            .uncaughtException(myWorker, e);
+                } catch (Throwable ignored) {
+                    // the handler must not stop the worker either
+                }
+            }
+            synchronized (myLock) {
+                release(task);
+            }
+            task = next;
+        }
+    }
+
+    private Node takeImmediate() {
+        synchronized (myLock) {
+            Node head = myImmediateHead;
+            myImmediateHead = null;
+            myImmediateTail = null;
+            for (Node node = head; node != null; node = node.myExpired) {
+                myPendingCount--;
+            }
+            return head;
+        }
+    }
+
+    /**
+     * Unlinks the expired tasks from the bucket of the next tick and advances
+     * the tick.
+     *
+     * @return the list of the expired tasks linked via
+     *         {@link Node#myExpired}
+     */
+    private Node expire() {
+        synchronized (myLock) {
+            Node head = null;
+            Node tail = null;
+            Node node = myWheel[(int) (myNextTick & myMask)];
+            while (node != null) {
+                Node next = node.myNext;
+                if (node.myRounds <= 0) {
+                    unlink(node);
+                    myPendingCount--;
+                    node.isExpired = true;
+                    if (tail == null) {
+                        head = node;
+                    } else {
+                        tail.myExpired = node;
+                    }
+                    tail = node;
+                } else {
+                    node.myRounds--;
+                }
+                node = next;
+            }
+            myNextTick++;
+            return head;
+        }
+    }
+
+    private Node allocate(Runnable task) {
+        Node node = myFreeNodes;
+        if (node == null) {
+            node = new Node();
+        } else {
+            myFreeNodes = node.myNext;
+            node.myNext = null;
+        }
+        node.myTask = task;
+        return node;
+    }
+
+    private void link(Node node) {
+        Node head = myWheel[node.myBucket];
+        node.myNext = head;
+        if (head != null) {
+            head.myPrevious = node;
+        }
+        myWheel[node.myBucket] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.myPrevious == null) {
+            myWheel[node.myBucket] = node.myNext;
+        } else {
+            node.myPrevious.myNext = node.myNext;
+        }
+        if (node.myNext != null) {
+            node.myNext.myPrevious = node.myPrevious;
+        }
+        node.myPrevious = null;
+        node.myNext = null;
+    }
+
+    private void release(Node node) {
+        node.mySequence++;
+        node.myTask = null;
+        node.myExpired = null;
+        node.isExpired = false;
+        node.myNext = myFreeNodes;
+        myFreeNodes = node;
+    }
+
+    private static class Node {
+
+        private Runnable myTask;
+
+        /**
+         * The number of the times the node has been released.
+         */
+        private long mySequence;
+
+        private long myRounds;
+
+        private int myBucket;
+
+        private Node myPrevious;
+
+        private Node myNext;
+
+        private Node myExpired;
+
+        private boolean isExpired;
+    }
+
+    private class Handle implements Cancellable {
+
+        private final Node myNode;
+
+        private final long mySequence;
+
+        Handle(Node node) {
+            myNode = node;
+            mySequence = node.mySequence;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (myLock) {
+                if (myNode.mySequence != mySequence || myNode.isExpired) {
+                    return false;
+                }
+                unlink(myNode);
+                myPendingCount--;
+                release(myNode);
+                return true;
+            }
+        }
+    }
+}
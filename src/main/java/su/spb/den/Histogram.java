@@ -0,0 +1,128 @@
+package su.spb.den;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of non negative long values in the spirit of
+ * HdrHistogram.
+ * <p>
+ * Each power of two range is split into 16 buckets, so the relative error of
+ * a value is under 1/16. Recording is lock-free and allocation free and may
+ * be done from any thread.
+ */
+class Histogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+
+    private static final int SIZE = getIndex(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray myCounts = new AtomicLongArray(SIZE);
+
+    private final LongAdder myCount = new LongAdder();
+
+    private final LongAdder mySum = new LongAdder();
+
+    private final AtomicLong myMax = new AtomicLong();
+
+    void record(long value) {
+        long v = Math.max(0, value);
+        myCounts.incrementAndGet(getIndex(v));
+        myCount.increment();
+        mySum.add(v);
+        long max = myMax.get();
+        while (v > max && !myMax.compareAndSet(max, v)) {
+            max = myMax.get();
+        }
+    }
+
+    /**
+     * Adds all the values recorded by the {@code other} histogram.
+     */
+    void add(Histogram other) {
+        for (int i = 0; i < SIZE; i++) {
+            long count = other.myCounts.get(i);
+            if (count != 0) {
+                myCounts.addAndGet(i, count);
+            }
+        }
+        myCount.add(other.getCount());
+        mySum.add(other.mySum.sum());
+        long max = other.getMax();
+        long current = myMax.get();
+        while (max > current && !myMax.compareAndSet(current, max)) {
+            current = myMax.get();
+        }
+    }
+
+    long getCount() {
+        return myCount.sum();
+    }
+
+    long getMax() {
+        return myMax.get();
+    }
+
+    double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) mySum.sum() / count;
+    }
+
+    /**
+     * Returns the value which is not less than the {@code percentile} of the
+     * recorded values (within the histogram precision).
+     *
+     * @param percentile
+     *            the percentile in the range {@code [0, 100]}
+     */
+    long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < SIZE; i++) {
+            seen += myCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a short text summary of the histogram.
+     */
+    String format() {
+        return String.format(
+                "count=%d mean=%.1f p50=%d p95=%d p99=%d max=%d", getCount(),
+                getMean(), getPercentile(50), getPercentile(95),
+                getPercentile(99), getMax());
+    }
+
+    private static int getIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF_COUNT + (int) (value >>> shift);
+    }
+
+    private static long getHighestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_COUNT - 1;
+        long sub = index - shift * HALF_COUNT;
+        if (shift + SUB_BITS >= 63) {
+            return Long.MAX_VALUE;
+        }
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,142 @@
+package su.spb.den;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of the user commands on their way to the dispatcher.
+ * <p>
+ * The {@link OverloadPolicy} defines what happens with a command when the
+ * queue is full. The repeated calls never reach the queue: they are
+ * coalesced by the {@link PendingCalls} of the car before. The queue collects
+ * its depth and overload statistics.
+ */
+class IngestionQueue {
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS
+            .toNanos(50);
+
+    enum OverloadPolicy {
+        /**
+         * The command is rejected.
+         */
+        REJECT,
+        /**
+         * The caller waits for a free slot up to the block timeout, then the
+         * command is rejected.
+         */
+        BLOCK;
+
+        /**
+         * Returns the policy by its name, {@code null} if there is no policy
+         * with the given name.
+         */
+        static OverloadPolicy forName(String name) {
+            for (OverloadPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum Result {
+        ACCEPTED, REJECTED
+    }
+
+    private final MpscRingBuffer<Command> myBuffer;
+
+    private final OverloadPolicy myPolicy;
+
+    private final long myBlockNanos;
+
+    private final LongAdder myAccepted = new LongAdder();
+
+    private final LongAdder myRejected = new LongAdder();
+
+    private volatile int myMaxDepth;
+
+    /**
+     * @param capacity
+     *            the capacity of the queue, rounded up to a power of two
+     * @param blockTimeout
+     *            the maximum wait time in milliseconds for the
+     *            {@link OverloadPolicy#BLOCK} policy
+     */
+    IngestionQueue(int capacity, OverloadPolicy policy, long blockTimeout) {
+        myBuffer = new MpscRingBuffer<>(capacity);
+        myPolicy = policy;
+        myBlockNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+    }
+
+    /**
+     * Adds the {@code command} to the queue applying the overload policy if
+     * the queue is full.
+     *
+     * @param mayBlock
+     *            whether the caller may wait for a free slot, there is no
+     *            sense to wait if the caller is the consumer of the queue
+     */
+    Result offer(Command command, boolean mayBlock) {
+        boolean added = myBuffer.offer(command);
+        if (!added && mayBlock && myPolicy == OverloadPolicy.BLOCK) {
+            long deadline = System.nanoTime() + myBlockNanos;
+            while (!added && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                added = myBuffer.offer(command);
+            }
+        }
+        if (added) {
+            myAccepted.increment();
+            updateMaxDepth();
+            return Result.ACCEPTED;
+        }
+        myRejected.increment();
+        return Result.REJECTED;
+    }
+
+    /**
+     * Removes and returns the next command, {@code null} if the queue is
+     * empty. Must be called by the consumer thread only.
+     */
+    Command poll() {
+        return myBuffer.poll();
+    }
+
+    boolean isEmpty() {
+        return myBuffer.isEmpty();
+    }
+
+    int getDepth() {
+        return myBuffer.size();
+    }
+
+    int getMaxDepth() {
+        return myMaxDepth;
+    }
+
+    int getCapacity() {
+        return myBuffer.getCapacity();
+    }
+
+    long getAcceptedCount() {
+        return myAccepted.sum();
+    }
+
+    long getRejectedCount() {
+        return myRejected.sum();
+    }
+
+    private void updateMaxDepth() {
+        int depth = myBuffer.size();
+        if (depth > myMaxDepth) {
+            synchronized (this) {
+                if (depth > myMaxDepth) {
+                    myMaxDepth = depth;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package su.spb.den;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * LOOK scheduling: the elevator keeps moving in the current direction and
+ * stops at the requested floors on its way while there are requests ahead,
+ * then it reverses the direction.
+ * <p>
+ * The earliest command wins among the commands for the same floor. The
+ * floors with commands are kept in a bit set, so the next floor in the
+ * direction is found by a word scan rather than by a scan of the commands.
+ */
+class LookCallQueue extends FloorCallQueue {
+
+    private final BitSet myFloors = new BitSet();
+
+    private boolean isMovingUp = true;
+
+    @Override
+    public Command poll(int currentFloor) {
+        if (isEmpty()) {
+            return null;
+        }
+        int floor = findNext(currentFloor, isMovingUp);
+        if (floor < 0) {
+            isMovingUp = !isMovingUp;
+            floor = findNext(currentFloor, isMovingUp);
+        }
+        Command command = getFirst(floor);
+        remove(command);
+        if (floor != currentFloor) {
+            isMovingUp = floor > currentFloor;
+        }
+        return command;
+    }
+
+    @Override
+    public void forEachStop(int currentFloor, IntConsumer consumer) {
+        int from = Math.max(0, currentFloor);
+        if (isMovingUp) {
+            for (int floor = myFloors.nextSetBit(from); floor >= 0;
+                    floor = myFloors.nextSetBit(floor + 1)) {
+                consumer.accept(floor);
+            }
+            for (int floor = myFloors.previousSetBit(from); floor >= 0;
+                    floor = myFloors.previousSetBit(floor - 1)) {
+                consumer.accept(floor);
+            }
+        } else {
+            for (int floor = myFloors.previousSetBit(from); floor >= 0;
+                    floor = myFloors.previousSetBit(floor - 1)) {
+                consumer.accept(floor);
+            }
+            for (int floor = myFloors.nextSetBit(from); floor >= 0;
+                    floor = myFloors.nextSetBit(floor + 1)) {
+                consumer.accept(floor);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the elevator serves the floors upwards at the
+     * moment.
+     */
+    boolean isMovingUp() {
+        return isMovingUp;
+    }
+
+    @Override
+    void floorAdded(int floor) {
+        myFloors.set(floor);
+    }
+
+    @Override
+    void floorRemoved(int floor) {
+        myFloors.clear(floor);
+    }
+
+    private int findNext(int currentFloor, boolean up) {
+        int from = Math.max(0, currentFloor);
+        return up ? myFloors.nextSetBit(from) : myFloors.previousSetBit(from);
+    }
+}
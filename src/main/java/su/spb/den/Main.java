@@ -1,27 +1,84 @@
 package su.spb.den;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.LongSupplier;
 import java.util.stream.IntStream;
 
 public class Main {
 
     private static final String STOP_COMMAND = "quit";
     private static final String INDENT = "  ";
+    private static final int OUTPUT_CAPACITY = 4096;
+    private static final long LOG_FLUSH_PERIOD = 1000;
 
     public static void main(String[] args) {
         Parameters params = new Parameters(args);
         if (!params.isValid()) {
             return;
         }
+        if (params.getReplayFile() != null) {
+            replay(params);
+            return;
+        }
+        if (params.isBatch()) {
+            batch(params);
+            return;
+        }
+        if (params.getSweep() != null) {
+            sweep(args, params);
+            return;
+        }
+        if (params.getTraffic() != null) {
+            generate(params);
+            return;
+        }
         showInvitation(true);
 
-        ElevatorManager manager = new ElevatorManager(params);
+        EventLog log = openLog(params, HashedWheelScheduler.shared()::now);
+        if (log != null) {
+            // the session usually ends with Ctrl^C
+            log.flushEvery(HashedWheelScheduler.shared(), LOG_FLUSH_PERIOD);
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(() -> closeLog(log)));
+        }
+        ControlServer server = openServer(params);
+        AsyncOutput output = params.isAsyncOutput()
+                ? new AsyncOutput(OUTPUT_CAPACITY, params.getOutputPolicy(),
+                        new ConsoleEventWriter(params.getCars() == 1))
+                : null;
+        ElevatorGroup manager = new ElevatorGroup(params, car -> {
+            OutputProvider provider = output != null ? output.forCar(car)
+                    : createOutput(params, car);
+            if (server != null) {
+                provider = server.record(car, provider);
+            }
+            return log == null ? provider : log.record(car, provider);
+        });
+        if (server != null) {
+            server.start(manager, log);
+        }
+        if (params.getMetricsPeriod() > 0) {
+            manager.dumpMetrics(params.getMetricsPeriod() * 1000L,
+                    metrics -> {
+                        System.out.println("\n" + metrics);
+                        System.out.print("> ");
+                        System.out.flush();
+                    });
+        }
         try (Scanner scanner = new Scanner(System.in)) {
             while (true) {
 
                 System.out.print("> ");
                 System.out.flush();
 
+                if (!scanner.hasNextLine()) {
+                    break;
+                }
                 String line = scanner.nextLine().trim();
                 if (line.isEmpty()) {
                     continue;
@@ -31,27 +88,185 @@ public class Main {
                 }
 
                 Boolean isOutside = null;
+                boolean isDestination = false;
                 if (Character.toLowerCase(line.charAt(0)) == 'o') {
                     isOutside = true;
                 } else if (Character.toLowerCase(line.charAt(0)) == 'i') {
                     isOutside = false;
+                } else if (Character.toLowerCase(line.charAt(0)) == 'd') {
+                    isOutside = true;
+                    isDestination = true;
                 }
 
-                Integer floor = parseFloorNumber(line.substring(1));
+                String[] arguments = line.substring(1).trim().split("\\s+");
+                Integer floor = parseFloorNumber(arguments[0]);
+                Integer car = arguments.length > 1
+                        ? parseFloorNumber(arguments[1]) : Integer.valueOf(1);
 
-                if (isOutside == null || floor == null) {
+                if (isOutside == null || floor == null || car == null
+                        || arguments.length > 2
+                        || (isDestination && arguments.length < 2)
+                        || (isOutside && !isDestination
+                                && arguments.length > 1)) {
                     System.err.println("Unexpected command: " + line);
                     System.err.flush();
                     showInvitation(false);
+                } else if (isDestination) {
+                    // the second argument is the destination floor
+                    int to = car;
+                    int assigned = manager.callDestination(floor, to);
+                    if (log != null && assigned >= 0) {
+                        log.callDestination(assigned, floor, to);
+                    }
+                } else if (car < 1 || car > params.getCars()) {
+                    System.err.println("Unexpected car number: " + car);
+                    System.err.flush();
                 } else if (isOutside) {
-                    manager.callOutside(floor);
+                    int assigned = manager.callOutside(floor);
+                    if (log != null && assigned >= 0) {
+                        log.callOutside(assigned, floor);
+                    }
                 } else {
-                    manager.callInside(floor);
+                    manager.callInside(car - 1, floor);
+                    if (log != null) {
+                        log.callInside(car - 1, floor);
+                    }
                 }
             }
             scanner.close();
         } finally {
+            if (server != null) {
+                server.close();
+            }
             manager.shutdown();
+            if (output != null) {
+                output.shutdown();
+            }
+            closeLog(log);
+        }
+    }
+
+    private static void replay(Parameters params) {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        EventLog log = openLog(params, scheduler::now);
+        EventReplay replay = new EventReplay(params,
+                car -> log == null ? new NullOutputProvider()
+                        : log.record(car, new NullOutputProvider()),
+                scheduler);
+        try {
+            replay.replay(Paths.get(params.getReplayFile()));
+            System.out.println("Replayed " + replay.getCallCount()
+                    + " calls in " + replay.getDuration()
+                    + " ms of virtual time");
+            if (replay.getSkippedCount() > 0) {
+                System.out.println("Skipped " + replay.getSkippedCount()
+                        + " inside calls of missing cars");
+            }
+            if (replay.getMetrics() != null) {
+                System.out.println(
+                        replay.getMetrics().format(replay.getDuration()));
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot replay the event log "
+                    + params.getReplayFile() + ": " + e.getMessage());
+        } finally {
+            closeLog(log);
+        }
+    }
+
+    private static void batch(Parameters params) {
+        Scheduler scheduler = params.isVirtualClock() ? new VirtualScheduler()
+                : HashedWheelScheduler.shared();
+        EventLog log = openLog(params, scheduler::now);
+        BatchInput batch = new BatchInput(params, scheduler, log);
+        try (InputStream input = params.getBatchFile() == null ? System.in
+                : new FileInputStream(params.getBatchFile())) {
+            batch.run(input);
+            System.out.println(batch.format());
+            ElevatorMetrics metrics = batch.getGroup().getMetrics();
+            if (metrics != null) {
+                System.out.println(metrics.format(scheduler.now()));
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot read the batch commands: "
+                    + e.getMessage());
+        } finally {
+            batch.getGroup().shutdown();
+            closeLog(log);
+        }
+    }
+
+    private static void generate(Parameters params) {
+        TrafficGenerator generator = new TrafficGenerator(params,
+                params.getTraffic(), params.getTrafficRate(),
+                params.getTrafficDuration() * 60 * 1000L, params.getSeed());
+        generator.run();
+        System.out.println(generator.format());
+        ElevatorMetrics metrics = generator.getGroup().getMetrics();
+        if (metrics != null) {
+            System.out.println(metrics.format(generator.getFinishTime()));
+        }
+    }
+
+    private static void sweep(String[] args, Parameters params) {
+        ParameterSweep sweep;
+        try {
+            sweep = new ParameterSweep(args, params.getSweep());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        if (sweep.getInvalidCount() > 0) {
+            System.err.println("Skipped " + sweep.getInvalidCount()
+                    + " combination(s) with invalid parameters");
+        }
+        long start = System.nanoTime();
+        List<double[]> results = sweep.run(params.getThreads());
+        System.out.print(sweep.format(results, params.getFormat()));
+        System.err.println("Simulated " + sweep.getPointCount()
+                + " combination(s) in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private static OutputProvider createOutput(Parameters params, int car) {
+        return params.getCars() == 1 ? new OutputProviderImpl()
+                : new OutputProviderImpl("Car " + (car + 1));
+    }
+
+    private static EventLog openLog(Parameters params, LongSupplier clock) {
+        if (params.getRecordFile() == null) {
+            return null;
+        }
+        try {
+            return new EventLog(Paths.get(params.getRecordFile()), clock);
+        } catch (IOException e) {
+            System.err.println("Cannot open the event log "
+                    + params.getRecordFile() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ControlServer openServer(Parameters params) {
+        if (params.getHttpAddress() == null) {
+            return null;
+        }
+        try {
+            return new ControlServer(params.getHttpAddress(), params);
+        } catch (IOException e) {
+            System.err.println("Cannot start the HTTP endpoint "
+                    + params.getHttpAddress() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void closeLog(EventLog log) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Cannot write the event log: " + e.getMessage());
         }
     }
 
@@ -77,6 +292,12 @@ public class Main {
         System.out.println(
                 "i N , where the N is a floor number. Request an elevator to the N flour inside of the elevator");
         indent(2);
+        System.out.println(
+                "i N C , the same as above inside of the elevator car number C");
+        indent(2);
+        System.out.println(
+                "d N M , a passenger at the N floor calls an elevator to the M floor");
+        indent(2);
         System.out.println("quit or Ctrl^C to exit");
         System.out.flush();
     }
@@ -0,0 +1,294 @@
+package su.spb.den;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Kinematic model of the car motion between floors.
+ * <p>
+ * The car starts and stops with the acceleration and the jerk limited, so a
+ * leg is a symmetric S-curve: the jerk phase, the constant acceleration
+ * phase, the jerk phase, the cruise at the maximum speed and the mirrored
+ * deceleration. Short legs don't reach the maximum speed or even the maximum
+ * acceleration, the peak speed is found analytically. Without the
+ * acceleration limit the car moves at the constant speed, without the jerk
+ * limit the acceleration is trapezoidal.
+ * <p>
+ * The floors have the same height, so the times depend on the distance of a
+ * leg only rather than on the pair of its floors. The leg times are computed
+ * once per distance, the floor passing times of a leg are computed on the
+ * first request and cached: the profile is shared by all the cars and may be
+ * used from any thread.
+ */
+class MotionProfile {
+
+    private final double myFloorHeight;
+
+    private final double mySpeed;
+
+    private final double myAcceleration;
+
+    private final double myJerk;
+
+    /**
+     * The time of a floor at the constant speed in milliseconds, used
+     * without the acceleration limit.
+     */
+    private final long myFloorTime;
+
+    /**
+     * The leg times in milliseconds indexed by the distance in floors.
+     */
+    private final long[] myLegTimes;
+
+    /**
+     * The latest times to start braking in milliseconds indexed by the
+     * distance in floors.
+     */
+    private final long[] myBrakeTimes;
+
+    /**
+     * The floor passing times in milliseconds indexed by the distance of the
+     * leg and the number of the passed floor minus one.
+     */
+    private final AtomicReferenceArray<long[]> myPassTimes;
+
+    /**
+     * @param acceleration
+     *            the maximum acceleration in m/s^2, not positive for no limit
+     * @param jerk
+     *            the maximum jerk in m/s^3, not positive for no limit
+     */
+    MotionProfile(int floors, double floorHeight, double speed,
+            double acceleration, double jerk) {
+        myFloorHeight = floorHeight;
+        mySpeed = speed;
+        myAcceleration = acceleration > 0 ? acceleration
+                : Double.POSITIVE_INFINITY;
+        myJerk = jerk > 0 ? jerk : Double.POSITIVE_INFINITY;
+        myFloorTime = (long) ((floorHeight * 1000) / speed);
+        myLegTimes = new long[floors + 1];
+        myBrakeTimes = new long[floors + 1];
+        for (int distance = 1; distance <= floors; distance++) {
+            if (isConstantSpeed()) {
+                myLegTimes[distance] = distance * myFloorTime;
+                myBrakeTimes[distance] = myLegTimes[distance];
+            } else {
+                Leg leg = new Leg(distance * floorHeight);
+                myLegTimes[distance] = toMillis(leg.myTime);
+                myBrakeTimes[distance] = toMillis(leg.myTime - leg.myRampTime);
+            }
+        }
+        myPassTimes = new AtomicReferenceArray<>(floors + 1);
+    }
+
+    MotionProfile(Parameters params) {
+        this(params.getFloorNumbers(), params.getFloorHeight(),
+                params.getSpeed(), params.getAcceleration(), params.getJerk());
+    }
+
+    /**
+     * Returns the time of the leg from the {@code from} floor to the
+     * {@code to} floor in milliseconds.
+     */
+    long getTravelTime(int from, int to) {
+        return myLegTimes[Math.abs(to - from)];
+    }
+
+    /**
+     * Returns the time from the start of a leg of the {@code distance}
+     * floors to the moment the {@code floor}-th floor of the leg is reached,
+     * in milliseconds.
+     */
+    long getPassTime(int distance, int floor) {
+        if (floor >= distance) {
+            return myLegTimes[distance];
+        }
+        if (floor <= 0) {
+            return 0;
+        }
+        if (isConstantSpeed()) {
+            return floor * myFloorTime;
+        }
+        long[] times = myPassTimes.get(distance);
+        if (times == null) {
+            times = computePassTimes(distance);
+            myPassTimes.set(distance, times);
+        }
+        return times[floor - 1];
+    }
+
+    /**
+     * Returns the number of the floors passed by the {@code elapsed}
+     * milliseconds since the start of a leg of the {@code distance} floors.
+     */
+    int getPassedFloors(int distance, long elapsed) {
+        if (elapsed >= myLegTimes[distance]) {
+            return distance;
+        }
+        if (isConstantSpeed()) {
+            return myFloorTime == 0 ? distance : (int) (elapsed / myFloorTime);
+        }
+        int low = 0;
+        int high = distance;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getPassTime(distance, middle) <= elapsed) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns {@code true} if the car which started a leg {@code elapsed}
+     * milliseconds ago still can stop after the {@code distance} floors
+     * within the limits.
+     */
+    boolean canStopAt(int distance, long elapsed) {
+        return elapsed < myBrakeTimes[distance];
+    }
+
+    private boolean isConstantSpeed() {
+        return myAcceleration == Double.POSITIVE_INFINITY;
+    }
+
+    private long[] computePassTimes(int distance) {
+        Leg leg = new Leg(distance * myFloorHeight);
+        long[] times = new long[distance - 1];
+        double low = 0;
+        for (int floor = 1; floor < distance; floor++) {
+            double target = floor * myFloorHeight;
+            double high = leg.myTime;
+            for (int i = 0; i < 64 && high - low > 1e-6; i++) {
+                double middle = (low + high) / 2;
+                if (leg.getDistance(middle) < target) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            times[floor - 1] = toMillis(high);
+        }
+        return times;
+    }
+
+    private static long toMillis(double seconds) {
+        return Math.round(seconds * 1000);
+    }
+
+    /**
+     * The S-curve of a leg, the times are in seconds and the distances are
+     * in meters.
+     */
+    private class Leg {
+
+        private final double myLength;
+
+        private final double myPeakSpeed;
+
+        private final double myPeakAcceleration;
+
+        /**
+         * The time of each jerk phase.
+         */
+        private final double myJerkTime;
+
+        /**
+         * The time of the constant acceleration phase.
+         */
+        private final double myAccelerationTime;
+
+        /**
+         * The time of the acceleration to the peak speed.
+         */
+        private final double myRampTime;
+
+        private final double myRampLength;
+
+        private final double myTime;
+
+        Leg(double length) {
+            myLength = length;
+            double speed = mySpeed;
+            if (speed * getRampTime(speed) > length) {
+                speed = getPeakSpeed(length);
+            }
+            myPeakSpeed = speed;
+            myJerkTime = Math.min(myAcceleration / myJerk,
+                    Math.sqrt(speed / myJerk));
+            myPeakAcceleration = myJerkTime == 0 ? myAcceleration
+                    : myJerk * myJerkTime;
+            myAccelerationTime = Math.max(0,
+                    speed / myPeakAcceleration - myJerkTime);
+            myRampTime = 2 * myJerkTime + myAccelerationTime;
+            myRampLength = speed * myRampTime / 2;
+            myTime = 2 * myRampTime + (length - 2 * myRampLength) / speed;
+        }
+
+        /**
+         * Returns the distance travelled by the {@code time} since the
+         * start.
+         */
+        double getDistance(double time) {
+            if (time <= myRampTime) {
+                return getRampDistance(time);
+            }
+            if (time >= myTime - myRampTime) {
+                return myLength - getRampDistance(myTime - time);
+            }
+            return myRampLength + myPeakSpeed * (time - myRampTime);
+        }
+
+        private double getRampDistance(double time) {
+            double jerk = myJerkTime == 0 ? 0 : myJerk;
+            double t1 = Math.min(time, myJerkTime);
+            double distance = jerk * t1 * t1 * t1 / 6;
+            if (time <= myJerkTime) {
+                return distance;
+            }
+            double speed = jerk * myJerkTime * myJerkTime / 2;
+            double t2 = Math.min(time - myJerkTime, myAccelerationTime);
+            distance += speed * t2 + myPeakAcceleration * t2 * t2 / 2;
+            speed += myPeakAcceleration * t2;
+            if (time <= myJerkTime + myAccelerationTime) {
+                return distance;
+            }
+            double t3 = Math.min(time - myJerkTime - myAccelerationTime,
+                    myJerkTime);
+            return distance + speed * t3 + myPeakAcceleration * t3 * t3 / 2
+                    - jerk * t3 * t3 * t3 / 6;
+        }
+
+        /**
+         * Returns the time of the acceleration from the standstill to the
+         * {@code speed}.
+         */
+        private double getRampTime(double speed) {
+            double jerkTime = Math.min(myAcceleration / myJerk,
+                    Math.sqrt(speed / myJerk));
+            if (jerkTime == 0) {
+                return speed / myAcceleration;
+            }
+            return 2 * jerkTime
+                    + Math.max(0, speed / (myJerk * jerkTime) - jerkTime);
+        }
+
+        /**
+         * Returns the peak speed of the leg which is too short to reach the
+         * maximum speed: the leg is the acceleration to the peak speed and
+         * the deceleration back, so its length is the peak speed multiplied
+         * by the ramp time.
+         */
+        private double getPeakSpeed(double length) {
+            double ratio = myAcceleration / myJerk;
+            double speed = Math.pow(length * Math.sqrt(myJerk) / 2, 2.0 / 3);
+            if (speed < myAcceleration * ratio) {
+                return speed;
+            }
+            return (-ratio + Math.sqrt(ratio * ratio + 4 * length
+                    / myAcceleration)) * myAcceleration / 2;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package su.spb.den;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer.
+ * <p>
+ * Each slot of the ring has a sequence number: a producer claims the tail
+ * slot via CAS when the slot sequence says it's free and publishes the
+ * element by advancing the slot sequence, the consumer takes the element when
+ * the sequence says it's published. {@link #poll()} must be called by one
+ * thread at a time.
+ */
+class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> myBuffer;
+
+    private final AtomicLongArray mySequences;
+
+    private final int myMask;
+
+    private final AtomicLong myTail = new AtomicLong();
+
+    private volatile long myHead;
+
+    /**
+     * @param capacity
+     *            the capacity of the buffer, rounded up to a power of two
+     *            not less than 2: a single slot can't tell a published
+     *            element from a free slot of the next round
+     */
+    MpscRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2
+                : Integer.highestOneBit(capacity - 1) << 1;
+        myBuffer = new AtomicReferenceArray<>(size);
+        mySequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mySequences.set(i, i);
+        }
+        myMask = size - 1;
+    }
+
+    /**
+     * Adds the {@code element} to the queue.
+     *
+     * @return {@code false} if the queue is full
+     */
+    boolean offer(E element) {
+        long tail = myTail.get();
+        int index;
+        while (true) {
+            index = (int) (tail & myMask);
+            long delta = mySequences.get(index) - tail;
+            if (delta == 0) {
+                if (myTail.compareAndSet(tail, tail + 1)) {
+                    break;
+                }
+                tail = myTail.get();
+            } else if (delta < 0) {
+                return false;
+            } else {
+                tail = myTail.get();
+            }
+        }
+        myBuffer.lazySet(index, element);
+        mySequences.set(index, tail + 1);
+        return true;
+    }
+
+    /**
+     * Removes and returns the head of the queue or {@code null} if the queue
+     * is empty.
+     */
+    E poll() {
+        long head = myHead;
+        int index = (int) (head & myMask);
+        if (mySequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = myBuffer.get(index);
+        myBuffer.lazySet(index, null);
+        mySequences.set(index, head + myMask + 1);
+        myHead = head + 1;
+        return element;
+    }
+
+    int size() {
+        long size = myTail.get() - myHead;
+        return (int) Math.max(0, Math.min(size, getCapacity()));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int getCapacity() {
+        return myMask + 1;
+    }
+}
@@ -0,0 +1,32 @@
+package su.spb.den;
+
+import java.util.List;
+
+/**
+ * Assigns a call to the car which is the closest one to the call floor.
+ * <p>
+ * A car with less outstanding commands wins if the distance is the same.
+ */
+class NearestCarStrategy implements AssignmentStrategy {
+
+    @Override
+    public int assign(int floor, List<ElevatorManager> cars,
+            Parameters params) {
+        int result = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < cars.size(); i++) {
+            ElevatorManager car = cars.get(i);
+            int distance = Math.abs(car.getPosition() - floor);
+            int load = car.getOutstandingCount();
+            if (distance < bestDistance
+                    || (distance == bestDistance && load < bestLoad)) {
+                result = i;
+                bestDistance = distance;
+                bestLoad = load;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,36 @@
+package su.spb.den;
+
+/**
+ * Output provider which ignores all the events.
+ */
+class NullOutputProvider implements OutputProvider {
+
+    @Override
+    public void error(String error) {
+    }
+
+    @Override
+    public void floorPassed(int floor) {
+    }
+
+    @Override
+    public void doorsOpened() {
+    }
+
+    @Override
+    public void doorsClosed() {
+    }
+
+    @Override
+    public void doorsClosing() {
+    }
+
+    @Override
+    public void sameFloorInside(int floor) {
+    }
+
+    @Override
+    public boolean isFloorPassedReported() {
+        return false;
+    }
+}
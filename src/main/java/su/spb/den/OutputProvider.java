@@ -13,4 +13,12 @@ public interface OutputProvider {
     void doorsClosing();
 
     void sameFloorInside(int floor);
+
+    /**
+     * Returns {@code false} if the provider ignores {@link #floorPassed(int)}:
+     * the moving elevator doesn't have to track every passed floor then.
+     */
+    default boolean isFloorPassedReported() {
+        return true;
+    }
 }
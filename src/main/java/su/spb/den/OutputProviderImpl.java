@@ -2,38 +2,44 @@ package su.spb.den;
 
 public class OutputProviderImpl implements OutputProvider {
 
+    private final String myPrefix;
+
+    public OutputProviderImpl() {
+        myPrefix = "";
+    }
+
+    /**
+     * Creates a provider which prefixes all the messages with the
+     * {@code carName}.
+     */
+    public OutputProviderImpl(String carName) {
+        myPrefix = carName + ": ";
+    }
+
     @Override
     public void error(String error) {
-        System.err.println(error);
+        System.err.println(myPrefix + error);
         System.err.flush();
     }
 
     @Override
     public void floorPassed(int floor) {
-        System.out.println(String
-                .format("\nThe elevator is on the floor number %d", floor));
-        showCommandInvite();
+        print(ElevatorEvent.FLOOR_PASSED, floor);
     }
 
     @Override
     public void doorsOpened() {
-        System.out.println("\nThe elevator's doors are opened");
-        showCommandInvite();
+        print(ElevatorEvent.DOORS_OPENED, 0);
     }
 
     @Override
     public void doorsClosed() {
-        System.out.println("\nThe elevator's doors are closed");
-        showCommandInvite();
+        print(ElevatorEvent.DOORS_CLOSED, 0);
     }
 
     @Override
     public void sameFloorInside(int floor) {
-        System.out.println(String.format(
-                "\nThe elevator's doors are closed, it's on the floor number %s, "
-                        + "ignoring command to go the same floor requested inside the elevator",
-                floor));
-        showCommandInvite();
+        print(ElevatorEvent.SAME_FLOOR_INSIDE, floor);
     }
 
     @Override
@@ -41,6 +47,32 @@ public class OutputProviderImpl implements OutputProvider {
         // ignore
     }
 
+    /**
+     * Returns the message shown to the user for the {@code event} or
+     * {@code null} if the event is not shown.
+     */
+    static String getMessage(ElevatorEvent event, int floor) {
+        switch (event) {
+        case FLOOR_PASSED:
+            return "The elevator is on the floor number " + floor;
+        case DOORS_OPENED:
+            return "The elevator's doors are opened";
+        case DOORS_CLOSED:
+            return "The elevator's doors are closed";
+        case SAME_FLOOR_INSIDE:
+            return "The elevator's doors are closed, it's on the floor number "
+                    + floor + ", "
+                    + "ignoring command to go the same floor requested inside the elevator";
+        default:
+            return null;
+        }
+    }
+
+    private void print(ElevatorEvent event, int floor) {
+        System.out.println("\n" + myPrefix + getMessage(event, floor));
+        showCommandInvite();
+    }
+
     private void showCommandInvite() {
         System.out.print("> ");
         System.out.flush();
@@ -0,0 +1,267 @@
+package su.spb.den;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs the generated traffic for each combination of the swept parameter
+ * values.
+ * <p>
+ * The ranges look like {@code floors=10,15,20;speed=1:3:0.5}: a list of
+ * values or a {@code from:to:step} range for any command line option. The
+ * simulations are independent, each one has its own virtual time, so they
+ * run in parallel on a fork-join pool without any shared state.
+ */
+class ParameterSweep {
+
+    static final String CSV = "csv";
+
+    static final String JSON = "json";
+
+    private static final String[] COLUMNS = { "passengers", "delivered",
+            "mean_wait_s", "p95_wait_s", "p99_wait_s", "mean_journey_s",
+            "throughput_per_hour", "utilisation", "energy_wh" };
+
+    private static final Set<String> SWEEP_OPTIONS = new HashSet<>(
+            Arrays.asList("sweep", "threads", "format", "metrics"));
+
+    private final Map<String, List<String>> myRanges;
+
+    private final List<String[]> myPoints = new ArrayList<>();
+
+    private final List<Parameters> myParams = new ArrayList<>();
+
+    private int myInvalidCount;
+
+    /**
+     * @param args
+     *            the command line arguments, the swept options override them
+     * @throws IllegalArgumentException
+     *             if the ranges cannot be parsed
+     */
+    ParameterSweep(String[] args, String ranges) {
+        myRanges = parseRanges(ranges);
+        Set<String> stripped = new HashSet<>(SWEEP_OPTIONS);
+        stripped.addAll(myRanges.keySet());
+        List<String> base = stripOptions(args, stripped);
+        base.add("-metrics");
+        base.add("0");
+        addPoints(base, new ArrayList<>(myRanges.keySet()), 0,
+                new String[myRanges.size()]);
+    }
+
+    /**
+     * Returns the number of the combinations which have invalid parameters
+     * and are not simulated.
+     */
+    int getInvalidCount() {
+        return myInvalidCount;
+    }
+
+    int getPointCount() {
+        return myPoints.size();
+    }
+
+    /**
+     * Simulates all the combinations using the {@code threads} number of
+     * threads.
+     *
+     * @return the result rows in the order of the combinations
+     */
+    List<double[]> run(int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<double[]>> tasks = new ArrayList<>();
+            for (Parameters params : myParams) {
+                tasks.add(pool.submit(() -> simulate(params)));
+            }
+            List<double[]> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<double[]> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Formats the {@code results} of {@link #run(int)} as a table in the
+     * {@code format}: {@link #CSV} or {@link #JSON}.
+     */
+    String format(List<double[]> results, String format) {
+        List<String> names = new ArrayList<>(myRanges.keySet());
+        StringBuilder builder = new StringBuilder();
+        boolean json = JSON.equals(format);
+        if (json) {
+            builder.append("[\n");
+        } else {
+            builder.append(String.join(",", names));
+            for (String column : COLUMNS) {
+                builder.append(',').append(column);
+            }
+            builder.append('\n');
+        }
+        for (int i = 0; i < results.size(); i++) {
+            String[] point = myPoints.get(i);
+            double[] row = results.get(i);
+            if (json) {
+                builder.append("  {");
+                for (int j = 0; j < point.length; j++) {
+                    builder.append('"').append(names.get(j)).append("\": ")
+                            .append(jsonValue(point[j])).append(", ");
+                }
+                for (int j = 0; j < row.length; j++) {
+                    builder.append('"').append(COLUMNS[j]).append("\": ")
+                            .append(format(row[j]));
+                    builder.append(j < row.length - 1 ? ", " : "}");
+                }
+                builder.append(i < results.size() - 1 ? ",\n" : "\n");
+            } else {
+                builder.append(String.join(",", point));
+                for (double value : row) {
+                    builder.append(',').append(format(value));
+                }
+                builder.append('\n');
+            }
+        }
+        if (json) {
+            builder.append("]\n");
+        }
+        return builder.toString();
+    }
+
+    private static double[] simulate(Parameters params) {
+        TrafficGenerator generator = new TrafficGenerator(params,
+                params.getTraffic(), params.getTrafficRate(),
+                params.getTrafficDuration() * 60 * 1000L, params.getSeed());
+        generator.run();
+        ElevatorMetrics metrics = generator.getGroup().getMetrics();
+        long finish = generator.getFinishTime();
+        return new double[] { generator.getArrivedCount(),
+                generator.getDeliveredCount(), generator.getMeanWait() / 1000,
+                metrics.getWaitTime().getPercentile(95) / 1000d,
+                metrics.getWaitTime().getPercentile(99) / 1000d,
+                generator.getMeanJourney() / 1000,
+                finish == 0 ? 0
+                        : generator.getDeliveredCount() * 3600000d / finish,
+                metrics.getUtilisation(finish), metrics.getEnergy() };
+    }
+
+    private void addPoints(List<String> base, List<String> names, int index,
+            String[] point) {
+        if (index == names.size()) {
+            List<String> args = new ArrayList<>(base);
+            for (int i = 0; i < point.length; i++) {
+                args.add("-" + names.get(i));
+                args.add(point[i]);
+            }
+            Parameters params = new Parameters(args.toArray(new String[0]),
+                    false);
+            if (params.isValid()) {
+                myPoints.add(point.clone());
+                myParams.add(params);
+            } else {
+                myInvalidCount++;
+            }
+            return;
+        }
+        for (String value : myRanges.get(names.get(index))) {
+            point[index] = value;
+            addPoints(base, names, index + 1, point);
+        }
+    }
+
+    private static Map<String, List<String>> parseRanges(String ranges) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (String range : ranges.split(";")) {
+            if (range.trim().isEmpty()) {
+                continue;
+            }
+            int index = range.indexOf('=');
+            if (index <= 0 || index == range.length() - 1) {
+                throw new IllegalArgumentException(
+                        "Unexpected sweep range: " + range);
+            }
+            String name = range.substring(0, index).trim();
+            String values = range.substring(index + 1).trim();
+            result.put(name, values.indexOf(':') >= 0 ? parseRange(values)
+                    : Arrays.asList(values.split(",")));
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("No sweep ranges specified");
+        }
+        return result;
+    }
+
+    private static List<String> parseRange(String range) {
+        String[] bounds = range.split(":");
+        if (bounds.length < 2 || bounds.length > 3) {
+            throw new IllegalArgumentException(
+                    "Unexpected sweep range: " + range);
+        }
+        BigDecimal from;
+        BigDecimal to;
+        BigDecimal step;
+        try {
+            from = new BigDecimal(bounds[0]);
+            to = new BigDecimal(bounds[1]);
+            step = bounds.length == 3 ? new BigDecimal(bounds[2])
+                    : BigDecimal.ONE;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Unexpected sweep range: " + range);
+        }
+        if (step.signum() <= 0) {
+            throw new IllegalArgumentException(
+                    "The sweep step should be greater than 0: " + range);
+        }
+        List<String> values = new ArrayList<>();
+        for (BigDecimal value = from; value.compareTo(to) <= 0; value = value
+                .add(step)) {
+            values.add(value.toPlainString());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static List<String> stripOptions(String[] args,
+            Set<String> names) {
+        List<String> result = new ArrayList<>();
+        boolean skip = false;
+        for (String arg : args) {
+            if (arg.startsWith("-")) {
+                skip = names.contains(arg.substring(1));
+            }
+            if (!skip) {
+                result.add(arg);
+            }
+        }
+        return result;
+    }
+
+    private static String jsonValue(String value) {
+        try {
+            new BigDecimal(value);
+            return value;
+        } catch (NumberFormatException e) {
+            return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"")
+                    + '"';
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -1,5 +1,7 @@
 package su.spb.den;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,24 +22,205 @@ class Parameters {
      * The speed of the elevator in meters per second.
      */
     private double mySpeed = 1.5;
+    /**
+     * The maximum acceleration of the elevator in meters per second squared,
+     * 0 to move at the constant speed.
+     */
+    private double myAcceleration;
+    /**
+     * The maximum jerk of the elevator in meters per second cubed, 0 for no
+     * jerk limit.
+     */
+    private double myJerk;
     /**
      * The open doors time period in seconds.
      */
     private int myEntranceTime = 3;
+    /**
+     * The maximum number of passengers in a car, 0 if the capacity is not
+     * limited.
+     */
+    private int myCapacity;
+    /**
+     * The time a passenger takes to board or to alight in seconds, it
+     * extends the open doors time period.
+     */
+    private double myBoardTime = 1;
+    /**
+     * The number of elevator cars.
+     */
+    private int myCars = 1;
+    /**
+     * The name of the strategy which assigns outside calls to cars.
+     */
+    private String myStrategy = AssignmentStrategy.ETA;
+    /**
+     * The name of the policy which defines the order of served floors.
+     */
+    private String myPolicy = CallQueue.FIFO;
+    /**
+     * Whether the idle cars are moved to the floors of the expected calls.
+     */
+    private boolean isParkingEnabled;
+    /**
+     * The seconds of the wait which are worth a watt-hour in the dispatch
+     * objective.
+     */
+    private double myEnergyWeight;
+    /**
+     * The capacity of the command queue.
+     */
+    private int myQueueCapacity = 1024;
+    /**
+     * What to do with a command when the command queue is full.
+     */
+    private IngestionQueue.OverloadPolicy myOverloadPolicy =
+            IngestionQueue.OverloadPolicy.REJECT;
+    /**
+     * The maximum wait time for a free slot in the command queue in
+     * milliseconds.
+     */
+    private int myBlockTime = 100;
+    /**
+     * The period of the metrics dump in seconds, 0 to collect the metrics
+     * without dumping them, negative if the metrics are disabled.
+     */
+    private int myMetricsPeriod = -1;
+    /**
+     * What to do with an event when the asynchronous output buffer is full,
+     * {@code null} if the output is synchronous.
+     */
+    private AsyncOutput.FullPolicy myOutputPolicy;
+    /**
+     * The file of the event log to record the calls and the events to.
+     */
+    private String myRecordFile;
+    /**
+     * The file of the event log to replay the calls from.
+     */
+    private String myReplayFile;
+    /**
+     * Whether the commands are read in the batch mode.
+     */
+    private boolean isBatch;
+    /**
+     * The file to read the batch commands from, {@code null} to read them
+     * from the standard input.
+     */
+    private String myBatchFile;
+    /**
+     * Whether the batch is executed under the virtual time.
+     */
+    private boolean isVirtualClock;
+    /**
+     * The profile of the generated traffic, {@code null} if no traffic is
+     * generated.
+     */
+    private TrafficProfile myTraffic;
+    /**
+     * The mean number of generated passengers per minute.
+     */
+    private double myTrafficRate = 10;
+    /**
+     * The time of the generated arrivals in minutes.
+     */
+    private int myTrafficDuration = 60;
+    /**
+     * The seed of the traffic generator.
+     */
+    private long mySeed = 1;
+    /**
+     * Whether the generated passengers make destination calls instead of
+     * the hall calls followed by the car calls.
+     */
+    private boolean isDestinationDispatch;
+    /**
+     * The ranges of the parameters to sweep, {@code null} if there is no
+     * sweep.
+     */
+    private String mySweep;
+    /**
+     * The number of threads of the sweep.
+     */
+    private int myThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * The format of the sweep results.
+     */
+    private String myFormat = ParameterSweep.CSV;
+
+    /**
+     * The address of the HTTP control endpoint, {@code null} if there is no
+     * endpoint.
+     */
+    private InetSocketAddress myHttpAddress;
+
+    private MotionProfile myMotionProfile;
+
+    private EnergyModel myEnergyModel;
 
     private final Map<String, List<String>> params;
 
     private static String FLOOR_NUMBERS_PARAM = "floors";
     private static String FLOOR_HEIGHT_PARAM = "height";
     private static String SPEED_PARAM = "speed";
+    private static String ACCELERATION_PARAM = "accel";
+    private static String JERK_PARAM = "jerk";
     private static String ENTRANCE_TIME_PARAM = "ent";
+    private static String CARS_PARAM = "cars";
+    private static String CAPACITY_PARAM = "capacity";
+    private static String BOARD_TIME_PARAM = "boardtime";
+    private static String STRATEGY_PARAM = "strategy";
+    private static String POLICY_PARAM = "policy";
+    private static String PARKING_PARAM = "parking";
+    private static String ENERGY_PARAM = "energy";
+    private static String QUEUE_PARAM = "queue";
+    private static String OVERLOAD_PARAM = "overload";
+    private static String BLOCK_TIME_PARAM = "blocktime";
+    private static String METRICS_PARAM = "metrics";
+    private static String OUTPUT_PARAM = "output";
+    private static String SYNC_OUTPUT = "sync";
+    private static String RECORD_PARAM = "record";
+    private static String REPLAY_PARAM = "replay";
+    private static String BATCH_PARAM = "batch";
+    private static String CLOCK_PARAM = "clock";
+    private static String REAL_CLOCK = "real";
+    private static String VIRTUAL_CLOCK = "virtual";
+    private static String TRAFFIC_PARAM = "traffic";
+    private static String RATE_PARAM = "rate";
+    private static String DURATION_PARAM = "duration";
+    private static String SEED_PARAM = "seed";
+    private static String DISPATCH_PARAM = "dispatch";
+    private static String HALL_DISPATCH = "hall";
+    private static String DESTINATION_DISPATCH = "destination";
+    private static String NO_PARKING = "none";
+    private static String DEMAND_PARKING = "demand";
+    private static String SWEEP_PARAM = "sweep";
+    private static String THREADS_PARAM = "threads";
+    private static String FORMAT_PARAM = "format";
+    private static String HTTP_PARAM = "http";
+
+    private static final int MIN_FLOORS = 5;
+    private static final int MAX_FLOORS = 500;
+    private static final int MAX_CARS = 16;
+    private static final int MAX_QUEUE_CAPACITY = 1 << 20;
 
     private static final double OPEN_DOORS_TIME = 0.7;
     private static final double CLOSE_DOORS_TIME = OPEN_DOORS_TIME;
+    private static final double MIN_DWELL_TIME = 1;
 
     private boolean isValid = true;
 
     Parameters(String[] args) {
+        this(args, true);
+    }
+
+    /**
+     * @param verbose
+     *            whether the parameters or the usage are printed, the
+     *            parameters are never printed for a sweep to keep its table
+     *            clean
+     */
+    Parameters(String[] args, boolean verbose) {
         List<String> options = null;
         params = new HashMap<>();
 
@@ -62,8 +245,12 @@ class Parameters {
         }
 
         if (isValid) {
-            printCurrentParameters();
-        } else {
+            myMotionProfile = new MotionProfile(this);
+            myEnergyModel = new EnergyModel(getFloorHeight());
+            if (verbose && mySweep == null) {
+                printCurrentParameters();
+            }
+        } else if (verbose) {
             printUsage();
         }
     }
@@ -84,6 +271,34 @@ class Parameters {
         return mySpeed;
     }
 
+    double getAcceleration() {
+        return myAcceleration;
+    }
+
+    double getJerk() {
+        return myJerk;
+    }
+
+    /**
+     * Returns the motion model of the cars, it's shared by all of them.
+     */
+    MotionProfile getMotionProfile() {
+        return myMotionProfile;
+    }
+
+    EnergyModel getEnergyModel() {
+        return myEnergyModel;
+    }
+
+    /**
+     * Returns the weight of the energy in the dispatch objective: the
+     * seconds of the wait which are worth a watt-hour, 0 if the energy is not
+     * taken into account.
+     */
+    double getEnergyWeight() {
+        return myEnergyWeight;
+    }
+
     double getOpenDoorsTime() {
         return OPEN_DOORS_TIME;
     }
@@ -96,12 +311,158 @@ class Parameters {
         return myEntranceTime;
     }
 
+    /**
+     * Returns the time the doors stay open at least even if nobody enters
+     * the car.
+     */
+    double getMinDwellTime() {
+        return Math.min(MIN_DWELL_TIME, myEntranceTime);
+    }
+
+    /**
+     * Returns the maximum number of passengers in a car, 0 if the capacity is
+     * not limited.
+     */
+    int getCapacity() {
+        return myCapacity;
+    }
+
+    double getBoardTime() {
+        return myBoardTime;
+    }
+
+    int getCars() {
+        return myCars;
+    }
+
+    String getStrategy() {
+        return myStrategy;
+    }
+
+    String getPolicy() {
+        return myPolicy;
+    }
+
+    int getQueueCapacity() {
+        return myQueueCapacity;
+    }
+
+    IngestionQueue.OverloadPolicy getOverloadPolicy() {
+        return myOverloadPolicy;
+    }
+
+    int getBlockTime() {
+        return myBlockTime;
+    }
+
+    boolean isMetricsEnabled() {
+        return myMetricsPeriod >= 0;
+    }
+
+    int getMetricsPeriod() {
+        return myMetricsPeriod;
+    }
+
+    boolean isAsyncOutput() {
+        return myOutputPolicy != null;
+    }
+
+    AsyncOutput.FullPolicy getOutputPolicy() {
+        return myOutputPolicy;
+    }
+
+    /**
+     * Returns the event log file to record to, {@code null} if nothing is
+     * recorded.
+     */
+    String getRecordFile() {
+        return myRecordFile;
+    }
+
+    /**
+     * Returns the event log file to replay, {@code null} if the calls are
+     * read from the console.
+     */
+    String getReplayFile() {
+        return myReplayFile;
+    }
+
+    boolean isBatch() {
+        return isBatch;
+    }
+
+    /**
+     * Returns the file to read the batch commands from, {@code null} if they
+     * are read from the standard input.
+     */
+    String getBatchFile() {
+        return myBatchFile;
+    }
+
+    boolean isVirtualClock() {
+        return isVirtualClock;
+    }
+
+    /**
+     * Returns the profile of the generated traffic, {@code null} if no
+     * traffic is generated.
+     */
+    TrafficProfile getTraffic() {
+        return myTraffic;
+    }
+
+    double getTrafficRate() {
+        return myTrafficRate;
+    }
+
+    int getTrafficDuration() {
+        return myTrafficDuration;
+    }
+
+    long getSeed() {
+        return mySeed;
+    }
+
+    boolean isDestinationDispatch() {
+        return isDestinationDispatch;
+    }
+
+    boolean isParkingEnabled() {
+        return isParkingEnabled;
+    }
+
+    /**
+     * Returns the ranges of the parameters to sweep, {@code null} if there is
+     * no sweep.
+     */
+    String getSweep() {
+        return mySweep;
+    }
+
+    int getThreads() {
+        return myThreads;
+    }
+
+    String getFormat() {
+        return myFormat;
+    }
+
+    /**
+     * Returns the address of the HTTP control endpoint, {@code null} if
+     * there is no endpoint.
+     */
+    InetSocketAddress getHttpAddress() {
+        return myHttpAddress;
+    }
+
     private void printUsage() {
         indent(1);
         System.out.println("Use the following paramters and values:");
         indent(2);
         System.out.println(
-                "-floors n, where the n is the number of floors, greater or equals 5 and not greater 20");
+                "-floors n, where the n is the number of floors, greater or "
+                        + "equals " + MIN_FLOORS + " and not greater "
+                        + MAX_FLOORS);
         indent(2);
         System.out.println(
                 "-height h, where the h is the floor height in meters");
@@ -111,6 +472,125 @@ class Parameters {
         indent(2);
         System.out.println(
                 "-ent time, where the time is the time of open doors time period in seconds");
+        indent(2);
+        System.out.println(
+                "-accel a, where the a is the maximum acceleration in meters "
+                        + "per second squared, 0 for the constant speed");
+        indent(2);
+        System.out.println(
+                "-jerk j, where the j is the maximum jerk in meters per second "
+                        + "cubed, 0 for no limit");
+        indent(2);
+        System.out.println(
+                "-cars n, where the n is the number of elevator cars, not "
+                        + "greater " + MAX_CARS);
+        indent(2);
+        System.out.println(
+                "-capacity n, where the n is the maximum number of passengers "
+                        + "in a car, 0 for no limit");
+        indent(2);
+        System.out.println(
+                "-boardtime t, where the t is the time a passenger takes to "
+                        + "board or to alight in seconds");
+        indent(2);
+        System.out.println(
+                "-strategy name, where the name is the outside calls "
+                        + "assignment strategy: " + AssignmentStrategy.NEAREST
+                        + ", " + AssignmentStrategy.ETA + " or "
+                        + AssignmentStrategy.ZONING);
+        indent(2);
+        System.out.println(
+                "-policy name, where the name is the floors scheduling policy: "
+                        + CallQueue.FIFO + " or " + CallQueue.LOOK);
+        indent(2);
+        System.out.println(
+                "-parking name, where the name is how the idle cars are "
+                        + "parked: " + NO_PARKING + " to stay or "
+                        + DEMAND_PARKING + " to move to the floors of the "
+                        + "expected calls");
+        indent(2);
+        System.out.println(
+                "-energy w, where the w is the seconds of the wait a watt-hour "
+                        + "of the moves is worth for the dispatch, 0 to "
+                        + "minimize the wait only");
+        indent(2);
+        System.out.println(
+                "-queue n, where the n is the capacity of the command queue, "
+                        + "a power of two from 2 to " + MAX_QUEUE_CAPACITY);
+        indent(2);
+        System.out.println(
+                "-overload name, where the name is the full command queue "
+                        + "policy: reject or block");
+        indent(2);
+        System.out.println(
+                "-blocktime time, where the time is the maximum wait time for "
+                        + "the block policy in milliseconds");
+        indent(2);
+        System.out.println(
+                "-metrics period, enables metrics and dumps them each period "
+                        + "seconds, 0 to not dump them");
+        indent(2);
+        System.out.println(
+                "-output mode, where the mode is the output mode: sync, drop "
+                        + "or block. The last two write the output "
+                        + "asynchronously");
+        indent(2);
+        System.out.println(
+                "-record file, where the file is the binary event log to "
+                        + "append the calls and the events to");
+        indent(2);
+        System.out.println(
+                "-replay file, where the file is the binary event log to "
+                        + "replay the calls from under the virtual time");
+        indent(2);
+        System.out.println(
+                "-batch [file], reads the commands from the file or from the "
+                        + "standard input without prompts and prints a summary "
+                        + "at the end. A command may be prefixed with @T, the "
+                        + "time in milliseconds from the start");
+        indent(2);
+        System.out.println(
+                "-clock name, where the name is the clock of the batch mode: "
+                        + REAL_CLOCK + " or " + VIRTUAL_CLOCK);
+        indent(2);
+        System.out.println(
+                "-traffic name, generates passengers under the virtual time, "
+                        + "where the name is the profile: up-peak, down-peak, "
+                        + "lunch or inter-floor");
+        indent(2);
+        System.out.println(
+                "-rate r, where the r is the mean number of generated "
+                        + "passengers per minute");
+        indent(2);
+        System.out.println(
+                "-duration d, where the d is the time of the generated "
+                        + "arrivals in minutes");
+        indent(2);
+        System.out.println(
+                "-seed n, where the n is the seed of the traffic generator");
+        indent(2);
+        System.out.println(
+                "-dispatch name, where the name is how the generated "
+                        + "passengers call the cars: " + HALL_DISPATCH
+                        + " calls followed by car calls or "
+                        + DESTINATION_DISPATCH + " calls");
+        indent(2);
+        System.out.println(
+                "-sweep ranges, runs the generated traffic for each "
+                        + "combination of the parameter values in parallel, "
+                        + "the ranges look like floors=10,20;speed=1:3:0.5");
+        indent(2);
+        System.out.println(
+                "-threads n, where the n is the number of the sweep threads");
+        indent(2);
+        System.out.println(
+                "-format name, where the name is the sweep results format: "
+                        + ParameterSweep.CSV + " or " + ParameterSweep.JSON);
+        indent(2);
+        System.out.println(
+                "-http [host:]port, starts the HTTP control endpoint in the "
+                        + "interactive mode, the host is the loopback address "
+                        + "by default");
     }
 
     private void printCurrentParameters() {
@@ -125,9 +605,84 @@ class Parameters {
         indent(2);
         System.out.println(
                 "The elevator speed: " + getSpeed() + " meters per second");
+        if (getAcceleration() > 0) {
+            indent(2);
+            System.out.println("The elevator acceleration: "
+                    + getAcceleration() + " m/s^2, jerk: "
+                    + (getJerk() > 0 ? getJerk() + " m/s^3" : "unlimited"));
+        }
         indent(2);
         System.out.println("The open doors time period: " + getEntranceTime()
                 + " seconds");
+        indent(2);
+        System.out.println("The number of elevator cars: " + getCars());
+        if (getCapacity() > 0) {
+            indent(2);
+            System.out.println("The car capacity: " + getCapacity()
+                    + " passengers, " + getBoardTime()
+                    + " seconds to board or alight");
+        }
+        if (getCars() > 1) {
+            indent(2);
+            System.out.println("The assignment strategy: " + getStrategy());
+        }
+        indent(2);
+        System.out.println("The scheduling policy: " + getPolicy());
+        if (isParkingEnabled()) {
+            indent(2);
+            System.out.println("The parking: " + DEMAND_PARKING);
+        }
+        if (getEnergyWeight() > 0) {
+            indent(2);
+            System.out.println("The energy weight: " + getEnergyWeight()
+                    + " seconds per watt-hour");
+        }
+        indent(2);
+        System.out.println("The command queue capacity: "
+                + getQueueCapacity() + ", overload policy: "
+                + getOverloadPolicy().name().toLowerCase());
+        if (isMetricsEnabled()) {
+            indent(2);
+            System.out.println("The metrics dump period: "
+                    + getMetricsPeriod() + " seconds");
+        }
+        if (isAsyncOutput()) {
+            indent(2);
+            System.out.println("The asynchronous output, full buffer policy: "
+                    + getOutputPolicy().name().toLowerCase());
+        }
+        if (getRecordFile() != null) {
+            indent(2);
+            System.out.println("The event log to record: " + getRecordFile());
+        }
+        if (getReplayFile() != null) {
+            indent(2);
+            System.out.println("The event log to replay: " + getReplayFile());
+        }
+        if (isBatch()) {
+            indent(2);
+            System.out.println("The batch input: "
+                    + (getBatchFile() == null ? "standard input"
+                            : getBatchFile())
+                    + ", " + (isVirtualClock() ? VIRTUAL_CLOCK : REAL_CLOCK)
+                    + " clock");
+        }
+        if (getTraffic() != null) {
+            indent(2);
+            System.out.println("The generated traffic: "
+                    + getTraffic().name().toLowerCase().replace('_', '-')
+                    + ", " + getTrafficRate() + " passengers per minute for "
+                    + getTrafficDuration() + " minutes, seed " + getSeed()
+                    + ", " + (isDestinationDispatch() ? DESTINATION_DISPATCH
+                            : HALL_DISPATCH)
+                    + " dispatch");
+        }
+        if (getHttpAddress() != null) {
+            indent(2);
+            System.out.println("The HTTP control endpoint: "
+                    + getHttpAddress().getHostString() + ":"
+                    + getHttpAddress().getPort());
+        }
         System.out.println("");
         System.out.flush();
     }
@@ -139,8 +694,27 @@ class Parameters {
             return false;
         }
 
-        boolean valid = readFloorNumbers(params) && readFloorHeight()
-                && readSpeed() && readEntranceTime();
+        boolean valid = readFloorNumbers(params)
+                && readFloorHeight()
+                && readSpeed()
+                && readMotionLimits()
+                && readEntranceTime()
+                && readCars()
+                && readCapacity()
+                && readStrategy()
+                && readPolicy()
+                && readParking()
+                && readEnergyWeight()
+                && readQueueCapacity()
+                && readOverloadPolicy()
+                && readBlockTime()
+                && readMetricsPeriod()
+                && readOutputPolicy()
+                && readLogFiles()
+                && readBatch()
+                && readTraffic()
+                && readSweep()
+                && readHttp();
         if (!valid) {
             return false;
         }
@@ -175,6 +749,35 @@ class Parameters {
         return true;
     }
 
+    private boolean readMotionLimits() {
+        if (!validateOption(params, ACCELERATION_PARAM, "acceleration")
+                || !validateOption(params, JERK_PARAM, "jerk")) {
+            return false;
+        }
+        String value = null;
+        try {
+            if (params.containsKey(ACCELERATION_PARAM)) {
+                value = params.remove(ACCELERATION_PARAM).get(0);
+                myAcceleration = Double.parseDouble(value);
+            }
+            if (params.containsKey(JERK_PARAM)) {
+                value = params.remove(JERK_PARAM).get(0);
+                myJerk = Double.parseDouble(value);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(
+                    "Unexpected motion limit value specified via the command line: "
+                            + value);
+            return false;
+        }
+        if (myAcceleration < 0 || myJerk < 0) {
+            System.err.println(
+                    "The acceleration and the jerk cannot be negative");
+            return false;
+        }
+        return true;
+    }
+
     private boolean readFloorHeight() {
         if (!validateOption(params, FLOOR_HEIGHT_PARAM, "floor height")) {
             return false;
@@ -211,10 +814,13 @@ class Parameters {
                 return false;
             }
         }
-        boolean valid = myFloorNumbers >= 5 && myFloorNumbers <= 20;
+        boolean valid = myFloorNumbers >= MIN_FLOORS
+                && myFloorNumbers <= MAX_FLOORS;
         if (!valid) {
             System.err.println(
-                    "The floor numbers value should be greater or equals 5 and not less or equals 20");
+                    "The floor numbers value should be greater or equals "
+                            + MIN_FLOORS + " and not greater than "
+                            + MAX_FLOORS);
         }
         return valid;
     }
@@ -238,6 +844,433 @@ class Parameters {
         return true;
     }
 
+    private boolean readCars() {
+        if (!validateOption(params, CARS_PARAM, "number of cars")) {
+            return false;
+        }
+        if (params.containsKey(CARS_PARAM)) {
+            String cars = params.remove(CARS_PARAM).get(0);
+            try {
+                myCars = Integer.parseInt(cars);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Unexpected number of cars value specified via the command line: "
+                                + cars);
+                return false;
+            }
+        }
+        boolean valid = myCars >= 1 && myCars <= MAX_CARS;
+        if (!valid) {
+            System.err.println(
+                    "The number of cars should be greater than 0 and not greater than "
+                            + MAX_CARS);
+        }
+        return valid;
+    }
+
+    private boolean readCapacity() {
+        if (!validateOption(params, CAPACITY_PARAM, "car capacity")
+                || !validateOption(params, BOARD_TIME_PARAM, "board time")) {
+            return false;
+        }
+        String value = null;
+        try {
+            if (params.containsKey(CAPACITY_PARAM)) {
+                value = params.remove(CAPACITY_PARAM).get(0);
+                myCapacity = Integer.parseInt(value);
+            }
+            if (params.containsKey(BOARD_TIME_PARAM)) {
+                value = params.remove(BOARD_TIME_PARAM).get(0);
+                myBoardTime = Double.parseDouble(value);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(
+                    "Unexpected car capacity value specified via the command line: "
+                            + value);
+            return false;
+        }
+        if (myCapacity < 0 || myBoardTime < 0) {
+            System.err.println(
+                    "The car capacity and the board time cannot be negative");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readStrategy() {
+        if (!validateOption(params, STRATEGY_PARAM, "assignment strategy")) {
+            return false;
+        }
+        if (params.containsKey(STRATEGY_PARAM)) {
+            myStrategy = params.remove(STRATEGY_PARAM).get(0);
+        }
+        if (AssignmentStrategy.forName(myStrategy) == null) {
+            System.err.println(
+                    "Unknown assignment strategy specified via the command line: "
+                            + myStrategy);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readPolicy() {
+        if (!validateOption(params, POLICY_PARAM, "scheduling policy")) {
+            return false;
+        }
+        if (params.containsKey(POLICY_PARAM)) {
+            myPolicy = params.remove(POLICY_PARAM).get(0);
+        }
+        if (CallQueue.forPolicy(myPolicy) == null) {
+            System.err.println(
+                    "Unknown scheduling policy specified via the command line: "
+                            + myPolicy);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readParking() {
+        if (!validateOption(params, PARKING_PARAM, "parking")) {
+            return false;
+        }
+        if (params.containsKey(PARKING_PARAM)) {
+            String parking = params.remove(PARKING_PARAM).get(0);
+            if (DEMAND_PARKING.equalsIgnoreCase(parking)) {
+                isParkingEnabled = true;
+            } else if (!NO_PARKING.equalsIgnoreCase(parking)) {
+                System.err.println(
+                        "Unknown parking specified via the command line: "
+                                + parking);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readEnergyWeight() {
+        if (!validateOption(params, ENERGY_PARAM, "energy weight")) {
+            return false;
+        }
+        if (params.containsKey(ENERGY_PARAM)) {
+            String weight = params.remove(ENERGY_PARAM).get(0);
+            try {
+                myEnergyWeight = Double.parseDouble(weight);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Unexpected energy weight value specified via the command line: "
+                                + weight);
+                return false;
+            }
+        }
+        if (myEnergyWeight < 0) {
+            System.err.println("The energy weight cannot be negative");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readQueueCapacity() {
+        if (!validateOption(params, QUEUE_PARAM, "command queue capacity")) {
+            return false;
+        }
+        if (params.containsKey(QUEUE_PARAM)) {
+            String capacity = params.remove(QUEUE_PARAM).get(0);
+            try {
+                myQueueCapacity = Integer.parseInt(capacity);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Unexpected command queue capacity value specified via the command line: "
+                                + capacity);
+                return false;
+            }
+        }
+        // the ring buffer of the queue takes a power of two
+        boolean valid = myQueueCapacity >= 2
+                && myQueueCapacity <= MAX_QUEUE_CAPACITY
+                && Integer.bitCount(myQueueCapacity) == 1;
+        if (!valid) {
+            System.err.println(
+                    "The command queue capacity should be a power of two from 2 to "
+                            + MAX_QUEUE_CAPACITY);
+        }
+        return valid;
+    }
+
+    private boolean readOverloadPolicy() {
+        if (!validateOption(params, OVERLOAD_PARAM, "overload policy")) {
+            return false;
+        }
+        if (params.containsKey(OVERLOAD_PARAM)) {
+            String policy = params.remove(OVERLOAD_PARAM).get(0);
+            myOverloadPolicy = IngestionQueue.OverloadPolicy.forName(policy);
+            if (myOverloadPolicy == null) {
+                System.err.println(
+                        "Unknown overload policy specified via the command line: "
+                                + policy);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readBlockTime() {
+        if (!validateOption(params, BLOCK_TIME_PARAM, "block time")) {
+            return false;
+        }
+        if (params.containsKey(BLOCK_TIME_PARAM)) {
+            String time = params.remove(BLOCK_TIME_PARAM).get(0);
+            try {
+                myBlockTime = Integer.parseInt(time);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Unexpected block time value specified via the command line: "
+                                + time);
+                return false;
+            }
+        }
+        if (myBlockTime < 0) {
+            System.err.println("The block time cannot be negative");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readMetricsPeriod() {
+        if (!validateOption(params, METRICS_PARAM, "metrics period")) {
+            return false;
+        }
+        if (params.containsKey(METRICS_PARAM)) {
+            String period = params.remove(METRICS_PARAM).get(0);
+            try {
+                myMetricsPeriod = Integer.parseInt(period);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Unexpected metrics period value specified via the command line: "
+                                + period);
+                return false;
+            }
+            if (myMetricsPeriod < 0) {
+                System.err.println("The metrics period cannot be negative");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readOutputPolicy() {
+        if (!validateOption(params, OUTPUT_PARAM, "output mode")) {
+            return false;
+        }
+        if (params.containsKey(OUTPUT_PARAM)) {
+            String mode = params.remove(OUTPUT_PARAM).get(0);
+            if (SYNC_OUTPUT.equalsIgnoreCase(mode)) {
+                myOutputPolicy = null;
+                return true;
+            }
+            myOutputPolicy = AsyncOutput.FullPolicy.forName(mode);
+            if (myOutputPolicy == null) {
+                System.err.println(
+                        "Unknown output mode specified via the command line: "
+                                + mode);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readLogFiles() {
+        if (!validateOption(params, RECORD_PARAM, "record file")
+                || !validateOption(params, REPLAY_PARAM, "replay file")) {
+            return false;
+        }
+        if (params.containsKey(RECORD_PARAM)) {
+            myRecordFile = params.remove(RECORD_PARAM).get(0);
+        }
+        if (params.containsKey(REPLAY_PARAM)) {
+            myReplayFile = params.remove(REPLAY_PARAM).get(0);
+        }
+        if (myRecordFile != null && myRecordFile.equals(myReplayFile)) {
+            System.err.println(
+                    "The same event log cannot be recorded and replayed");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readBatch() {
+        List<String> batch = params.remove(BATCH_PARAM);
+        if (batch != null) {
+            if (batch.size() > 1) {
+                System.err.println(
+                        "Too many values are specified for the batch file");
+                return false;
+            }
+            isBatch = true;
+            myBatchFile = batch.isEmpty() ? null : batch.get(0);
+        }
+        if (!validateOption(params, CLOCK_PARAM, "clock")) {
+            return false;
+        }
+        if (params.containsKey(CLOCK_PARAM)) {
+            String clock = params.remove(CLOCK_PARAM).get(0);
+            if (VIRTUAL_CLOCK.equalsIgnoreCase(clock)) {
+                isVirtualClock = true;
+            } else if (!REAL_CLOCK.equalsIgnoreCase(clock)) {
+                System.err.println(
+                        "Unknown clock specified via the command line: "
+                                + clock);
+                return false;
+            }
+        }
+        if (isBatch && myReplayFile != null) {
+            System.err.println(
+                    "The batch mode cannot be used with the replay");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readTraffic() {
+        if (!validateOption(params, TRAFFIC_PARAM, "traffic profile")
+                || !validateOption(params, RATE_PARAM, "traffic rate")
+                || !validateOption(params, DURATION_PARAM, "traffic duration")
+                || !validateOption(params, SEED_PARAM, "seed")
+                || !validateOption(params, DISPATCH_PARAM, "dispatch")) {
+            return false;
+        }
+        if (params.containsKey(TRAFFIC_PARAM)) {
+            String profile = params.remove(TRAFFIC_PARAM).get(0);
+            myTraffic = TrafficProfile.forName(profile);
+            if (myTraffic == null) {
+                System.err.println(
+                        "Unknown traffic profile specified via the command line: "
+                                + profile);
+                return false;
+            }
+        }
+        if (params.containsKey(DISPATCH_PARAM)) {
+            String dispatch = params.remove(DISPATCH_PARAM).get(0);
+            if (DESTINATION_DISPATCH.equalsIgnoreCase(dispatch)) {
+                isDestinationDispatch = true;
+            } else if (!HALL_DISPATCH.equalsIgnoreCase(dispatch)) {
+                System.err.println(
+                        "Unknown dispatch specified via the command line: "
+                                + dispatch);
+                return false;
+            }
+        }
+        String value = null;
+        try {
+            if (params.containsKey(RATE_PARAM)) {
+                value = params.remove(RATE_PARAM).get(0);
+                myTrafficRate = Double.parseDouble(value);
+            }
+            if (params.containsKey(DURATION_PARAM)) {
+                value = params.remove(DURATION_PARAM).get(0);
+                myTrafficDuration = Integer.parseInt(value);
+            }
+            if (params.containsKey(SEED_PARAM)) {
+                value = params.remove(SEED_PARAM).get(0);
+                mySeed = Long.parseLong(value);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(
+                    "Unexpected traffic value specified via the command line: "
+                            + value);
+            return false;
+        }
+        if (myTrafficRate <= 0 || myTrafficDuration <= 0) {
+            System.err.println(
+                    "The traffic rate and duration should be greater than 0");
+            return false;
+        }
+        if (myTraffic != null && (isBatch || myReplayFile != null)) {
+            System.err.println(
+                    "The traffic cannot be generated in the batch mode or with the replay");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readSweep() {
+        if (!validateOption(params, SWEEP_PARAM, "sweep ranges")
+                || !validateOption(params, THREADS_PARAM, "sweep threads")
+                || !validateOption(params, FORMAT_PARAM, "sweep format")) {
+            return false;
+        }
+        if (params.containsKey(SWEEP_PARAM)) {
+            mySweep = params.remove(SWEEP_PARAM).get(0);
+        }
+        if (params.containsKey(THREADS_PARAM)) {
+            String threads = params.remove(THREADS_PARAM).get(0);
+            try {
+                myThreads = Integer.parseInt(threads);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Unexpected number of sweep threads specified via the command line: "
+                                + threads);
+                return false;
+            }
+            if (myThreads < 1) {
+                System.err.println(
+                        "The number of sweep threads should be greater than 0");
+                return false;
+            }
+        }
+        if (params.containsKey(FORMAT_PARAM)) {
+            myFormat = params.remove(FORMAT_PARAM).get(0).toLowerCase();
+            if (!ParameterSweep.CSV.equals(myFormat)
+                    && !ParameterSweep.JSON.equals(myFormat)) {
+                System.err.println(
+                        "Unknown sweep format specified via the command line: "
+                                + myFormat);
+                return false;
+            }
+        }
+        if (mySweep != null && myTraffic == null) {
+            System.err.println("The sweep requires the traffic profile");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean readHttp() {
+        if (!validateOption(params, HTTP_PARAM, "HTTP endpoint")) {
+            return false;
+        }
+        if (!params.containsKey(HTTP_PARAM)) {
+            return true;
+        }
+        String address = params.remove(HTTP_PARAM).get(0);
+        int colon = address.lastIndexOf(':');
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (port < 0 || port > 0xFFFF) {
+            System.err.println(
+                    "Unexpected HTTP endpoint specified via the command line: "
+                            + address);
+            return false;
+        }
+        myHttpAddress = colon < 0
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(address.substring(0, colon), port);
+        if (myHttpAddress.isUnresolved()) {
+            System.err.println("Unknown HTTP endpoint host: "
+                    + myHttpAddress.getHostString());
+            return false;
+        }
+        if (isBatch || myReplayFile != null || myTraffic != null) {
+            System.err.println(
+                    "The HTTP endpoint is available in the interactive mode only");
+            return false;
+        }
+        return true;
+    }
+
     private boolean validateOption(Map<String, List<String>> params, String key,
             String parameter) {
         List<String> list = params.get(key);
@@ -0,0 +1,151 @@
+package su.spb.den;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Moves the idle cars of a group to the floors where the calls are expected.
+ * <p>
+ * The hall calls of the group feed the {@link DemandModel}. When a car gets
+ * idle, it's parked at the floor of the highest demand which has no other
+ * idle car standing at it or going to it, so several idle cars spread over
+ * the busy floors. The car stays where it is unless that floor has much
+ * higher demand than its own one.
+ * <p>
+ * The demand changes with the time of day, so an idle car is checked again
+ * at the start of the next slot of the model while the model has demand
+ * then: e.g. a car idle for the night goes to the lobby before the morning
+ * peak seen on the previous days.
+ */
+class ParkingPolicy {
+
+    /**
+     * The least demand of a floor to move a car there.
+     */
+    private static final int MIN_DEMAND = 2;
+
+    /**
+     * How many times the demand of a floor has to exceed the demand of the
+     * floor of the car to move the car: a car is not moved over the random
+     * differences of an even demand.
+     */
+    private static final int DOMINANCE = 2;
+
+    private final List<ElevatorManager> myCars;
+
+    private final Scheduler myScheduler;
+
+    private final DemandModel myModel;
+
+    private final int myFloors;
+
+    /**
+     * The floor each idle car has been parked at, it's taken into account
+     * before the car starts to move.
+     */
+    private final AtomicIntegerArray myTargets;
+
+    /**
+     * 1 if the check of the idle car is scheduled, 0 otherwise.
+     */
+    private final AtomicIntegerArray myChecks;
+
+    private volatile boolean isShutdown;
+
+    ParkingPolicy(Parameters params, List<ElevatorManager> cars,
+            Scheduler scheduler) {
+        myCars = cars;
+        myScheduler = scheduler;
+        myFloors = params.getFloorNumbers();
+        long offset = scheduler.isVirtual() ? 0
+                : TimeZone.getDefault().getOffset(scheduler.now());
+        myModel = new DemandModel(myFloors, offset);
+        myTargets = new AtomicIntegerArray(cars.size());
+        myChecks = new AtomicIntegerArray(cars.size());
+    }
+
+    /**
+     * Counts the hall call from the {@code floor}.
+     */
+    void callMade(int floor) {
+        myModel.record(floor, myScheduler.now());
+    }
+
+    /**
+     * Parks the {@code car} which has completed its commands.
+     */
+    void carIdle(int car) {
+        if (isShutdown) {
+            return;
+        }
+        long now = myScheduler.now();
+        int floor = choose(car, now);
+        myTargets.set(car, floor);
+        if (floor != myCars.get(car).getTargetFloor()) {
+            myCars.get(car).park(floor);
+        }
+        long next = myModel.getNextSlotTime(now);
+        if (myModel.hasDemand(next) && myChecks.compareAndSet(car, 0, 1)) {
+            myScheduler.schedule(() -> check(car), next - now);
+        }
+    }
+
+    void shutdown() {
+        isShutdown = true;
+    }
+
+    private void check(int car) {
+        myChecks.set(car, 0);
+        if (isStanding(car)) {
+            carIdle(car);
+        }
+    }
+
+    /**
+     * Returns the floor to park the {@code car} at, the floor of the car if
+     * it should stay.
+     */
+    private int choose(int car, long now) {
+        int current = myCars.get(car).getTargetFloor();
+        int best = current;
+        int bestDemand = 0;
+        for (int floor = 1; floor <= myFloors; floor++) {
+            int demand = myModel.getDemand(floor, now);
+            if (demand > bestDemand && !isCovered(car, floor)) {
+                best = floor;
+                bestDemand = demand;
+            }
+        }
+        int stayDemand = isCovered(car, current) ? 0
+                : myModel.getDemand(current, now);
+        if (bestDemand < MIN_DEMAND || bestDemand <= stayDemand * DOMINANCE) {
+            return current;
+        }
+        return best;
+    }
+
+    /**
+     * Returns {@code true} if an idle car other than the {@code car} stands
+     * at the {@code floor} or is parked there.
+     */
+    private boolean isCovered(int car, int floor) {
+        for (int i = 0; i < myCars.size(); i++) {
+            if (i == car || !myCars.get(i).isIdle()) {
+                continue;
+            }
+            int target = myTargets.get(i);
+            if ((target == 0 ? myCars.get(i).getTargetFloor()
+                    : target) == floor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isStanding(int car) {
+        ElevatorManager manager = myCars.get(car);
+        return manager.isIdle() && manager.getState()
+                .getDirection() == CarState.Direction.NONE;
+    }
+}
@@ -0,0 +1,83 @@
+package su.spb.den;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bitmap of the pending calls: one bit per floor and call type.
+ * <p>
+ * A call is pending since it's accepted until the doors are opened at its
+ * floor. A repeated call which is already pending is coalesced with it, so the
+ * number of queued calls is bounded by the number of floors instead of the
+ * number of pressed buttons. The bits may be changed from any thread.
+ */
+class PendingCalls {
+
+    private final AtomicLongArray myBits;
+
+    private final LongAdder myCoalesced = new LongAdder();
+
+    PendingCalls(int floors) {
+        myBits = new AtomicLongArray(((floors + 1) * 2 + 63) / 64);
+    }
+
+    /**
+     * Marks the call as pending.
+     *
+     * @return {@code false} if the call is already pending, the call is
+     *         counted as coalesced in this case
+     */
+    boolean mark(int floor, boolean inside) {
+        int key = getKey(floor, inside);
+        int word = key >>> 6;
+        long bit = 1L << key;
+        while (true) {
+            long bits = myBits.get(word);
+            if ((bits & bit) != 0) {
+                myCoalesced.increment();
+                return false;
+            }
+            if (myBits.compareAndSet(word, bits, bits | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Unmarks the call which has not been accepted after all.
+     */
+    void unmark(int floor, boolean inside) {
+        clear(getKey(floor, inside), 1L);
+    }
+
+    /**
+     * Clears both inside and outside calls of the {@code floor}.
+     */
+    void clearFloor(int floor) {
+        clear(getKey(floor, false), 3L);
+    }
+
+    boolean isPending(int floor, boolean inside) {
+        int key = getKey(floor, inside);
+        return (myBits.get(key >>> 6) & (1L << key)) != 0;
+    }
+
+    long getCoalescedCount() {
+        return myCoalesced.sum();
+    }
+
+    private void clear(int key, long mask) {
+        int word = key >>> 6;
+        long bits = mask << key;
+        while (true) {
+            long current = myBits.get(word);
+            if (myBits.compareAndSet(word, current, current & ~bits)) {
+                return;
+            }
+        }
+    }
+
+    private int getKey(int floor, boolean inside) {
+        return floor * 2 + (inside ? 1 : 0);
+    }
+}
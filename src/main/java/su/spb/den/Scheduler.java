@@ -0,0 +1,61 @@
+package su.spb.den;
+
+/**
+ * Source of time and delayed execution for the elevator manager.
+ * <p>
+ * All the time values are in milliseconds. The real time implementation is
+ * {@link HashedWheelScheduler}, the {@link VirtualScheduler} executes events
+ * in order of their virtual time without any sleeping.
+ */
+interface Scheduler {
+
+    /**
+     * Returns the current time of the scheduler in milliseconds.
+     */
+    long now();
+
+    /**
+     * Schedules the {@code task} to be executed after the {@code delay}
+     * milliseconds.
+     */
+    Cancellable schedule(Runnable task, long delay);
+
+    /**
+     * Returns {@code true} if the scheduler executes all its tasks in a
+     * single thread.
+     * <p>
+     * The manager doesn't start its own dispatcher thread in this case and
+     * dispatches commands via the scheduler.
+     */
+    boolean isEventLoop();
+
+    /**
+     * Returns {@code true} if the current thread is the thread which executes
+     * the scheduled tasks.
+     */
+    boolean inEventLoop();
+
+    /**
+     * Returns {@code true} if the scheduler time is virtual: waiting in real
+     * time doesn't let the scheduler progress.
+     */
+    default boolean isVirtual() {
+        return false;
+    }
+
+    void shutdown();
+
+    /**
+     * Handle of a scheduled task.
+     */
+    interface Cancellable {
+
+        /**
+         * Cancels the task.
+         *
+         * @return {@code false} if the task has been already executed or
+         *         cancelled
+         */
+        boolean cancel();
+    }
+}
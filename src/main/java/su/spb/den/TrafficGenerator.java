@@ -0,0 +1,369 @@
+package su.spb.den;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates passengers for an {@link ElevatorGroup} under the virtual time.
+ * <p>
+ * Passengers arrive as a Poisson process with the given rate, their origin
+ * and destination floors come from the {@link TrafficProfile}. A passenger
+ * makes a hall call at the origin, boards the first car which opens its
+ * doors there and then makes a car call to the destination. The passengers
+ * are counted per floor pair rather than kept as objects: the waiting ones
+ * per origin and destination, the riding ones per car and destination, along
+ * with the sums of their arrival times to compute the mean wait and journey
+ * times.
+ * <p>
+ * The boarding and alighting passengers are reported to the car to extend
+ * its dwell. If the car capacity is limited, the passengers who don't fit
+ * into the car call again when its doors are closing.
+ * <p>
+ * With the destination dispatch a passenger makes a destination call
+ * instead: the call is assigned to a car, the passenger waits for that car
+ * only and the car makes the car call itself. Such passengers are kept in
+ * the list of the car and origin as their arrival times packed with the
+ * destinations.
+ * <p>
+ * The same seed and parameters give exactly the same run.
+ */
+class TrafficGenerator {
+
+    private static final long MINUTE = 60 * 1000;
+
+    /**
+     * The multiplier of the arrival time in a packed assigned passenger,
+     * greater than any floor.
+     */
+    private static final int FLOOR_RANGE = 1024;
+
+    private final VirtualScheduler myScheduler;
+
+    private final ElevatorGroup myGroup;
+
+    private final TrafficProfile myProfile;
+
+    private final Random myRandom;
+
+    private final int myFloors;
+
+    /**
+     * The mean time between arrivals in milliseconds.
+     */
+    private final double myMeanInterval;
+
+    private final long myDuration;
+
+    private final int[][] myWaiting;
+
+    private final long[][] myWaitingSince;
+
+    private final int[][] myRiding;
+
+    private final long[][] myRidingSince;
+
+    /**
+     * The floor where the doors of the car are open, {@code 0} if they are
+     * closed.
+     */
+    private final int[] myOpenFloors;
+
+    private final boolean isDestinationDispatch;
+
+    /**
+     * The maximum number of passengers in a car, 0 if it's not limited.
+     */
+    private final int myCapacity;
+
+    /**
+     * The passengers assigned to the car by the destination dispatch per car
+     * and origin: the arrival time times {@link #FLOOR_RANGE} plus the
+     * destination.
+     */
+    private final long[][][] myAssigned;
+
+    private final int[][] myAssignedCount;
+
+    private long myArrivedCount;
+
+    private long myBoardedCount;
+
+    private long myDeliveredCount;
+
+    private long myTotalWait;
+
+    private long myTotalJourney;
+
+    private long myFinishTime;
+
+    /**
+     * @param rate
+     *            the mean number of passengers per minute
+     * @param duration
+     *            the time of arrivals in milliseconds
+     */
+    TrafficGenerator(Parameters params, TrafficProfile profile, double rate,
+            long duration, long seed) {
+        myScheduler = new VirtualScheduler();
+        myProfile = profile;
+        myRandom = new Random(seed);
+        myFloors = params.getFloorNumbers();
+        myMeanInterval = MINUTE / rate;
+        myDuration = duration;
+        int cars = params.getCars();
+        myWaiting = new int[myFloors + 1][myFloors + 1];
+        myWaitingSince = new long[myFloors + 1][myFloors + 1];
+        myRiding = new int[cars][myFloors + 1];
+        myRidingSince = new long[cars][myFloors + 1];
+        myOpenFloors = new int[cars];
+        isDestinationDispatch = params.isDestinationDispatch();
+        myCapacity = params.getCapacity();
+        myAssigned = new long[cars][myFloors + 1][];
+        myAssignedCount = new int[cars][myFloors + 1];
+        myGroup = new ElevatorGroup(params, CarOutput::new, myScheduler);
+    }
+
+    ElevatorGroup getGroup() {
+        return myGroup;
+    }
+
+    /**
+     * Generates the arrivals for the duration and returns when all the
+     * passengers are delivered.
+     */
+    void run() {
+        myScheduler.schedule(this::arrive, nextInterval());
+        myScheduler.run();
+        myGroup.shutdown();
+    }
+
+    long getArrivedCount() {
+        return myArrivedCount;
+    }
+
+    long getDeliveredCount() {
+        return myDeliveredCount;
+    }
+
+    /**
+     * Returns the mean time from the arrival to the boarding in milliseconds.
+     */
+    double getMeanWait() {
+        return myBoardedCount == 0 ? 0 : (double) myTotalWait / myBoardedCount;
+    }
+
+    /**
+     * Returns the mean time from the arrival to the delivery in milliseconds.
+     */
+    double getMeanJourney() {
+        return myDeliveredCount == 0 ? 0
+                : (double) myTotalJourney / myDeliveredCount;
+    }
+
+    /**
+     * Returns the time when the last passenger has been delivered.
+     */
+    long getFinishTime() {
+        return myFinishTime;
+    }
+
+    String format() {
+        return String.format(
+                "Traffic %s%s: %d passengers arrived, %d delivered in %d s,"
+                        + " mean wait %.1f s, mean journey %.1f s",
+                myProfile.name().toLowerCase().replace('_', '-'),
+                isDestinationDispatch ? " (destination dispatch)" : "",
+                myArrivedCount, myDeliveredCount, myFinishTime / 1000,
+                getMeanWait() / 1000, getMeanJourney() / 1000);
+    }
+
+    private long nextInterval() {
+        return (long) (-Math.log(1 - myRandom.nextDouble()) * myMeanInterval);
+    }
+
+    private void arrive() {
+        long now = myScheduler.now();
+        if (now > myDuration) {
+            return;
+        }
+        int origin = myProfile.origin(myRandom, myFloors);
+        int destination = myProfile.destination(myRandom, myFloors, origin);
+        myArrivedCount++;
+
+        int openCar = findOpenCar(origin);
+        if (openCar < 0 && isDestinationDispatch) {
+            assign(myGroup.callDestination(origin, destination), origin,
+                    destination, now);
+        } else {
+            myWaiting[origin][destination]++;
+            myWaitingSince[origin][destination] += now;
+            if (openCar >= 0) {
+                boardOpenCar(openCar, origin);
+            } else {
+                myGroup.callOutside(origin);
+            }
+        }
+        myScheduler.schedule(this::arrive, nextInterval());
+    }
+
+    private void doorsOpened(int car) {
+        ElevatorManager manager = myGroup.getCars().get(car);
+        int floor = manager.getPosition();
+        long now = myScheduler.now();
+        myOpenFloors[car] = floor;
+        int alighted = myRiding[car][floor];
+        if (alighted > 0) {
+            myDeliveredCount += alighted;
+            myTotalJourney += alighted * now - myRidingSince[car][floor];
+            myFinishTime = now;
+            myRiding[car][floor] = 0;
+            myRidingSince[car][floor] = 0;
+        }
+        int free = myCapacity == 0 ? Integer.MAX_VALUE
+                : myCapacity - manager.getLoad() + alighted;
+        int boarded = board(car, floor, free);
+        boarded += boardAssigned(car, floor, free - boarded);
+        manager.exchange(alighted, boarded);
+    }
+
+    /**
+     * Makes the passengers who have not boarded the full car call again
+     * when its doors are closing.
+     */
+    private void doorsClosing(int car) {
+        int floor = myOpenFloors[car];
+        myOpenFloors[car] = 0;
+        if (floor == 0) {
+            return;
+        }
+        int count = myAssignedCount[car][floor];
+        for (int i = 0; i < count; i++) {
+            myGroup.getCars().get(car).callDestination(floor,
+                    (int) (myAssigned[car][floor][i] % FLOOR_RANGE));
+        }
+        for (int destination = 1; destination <= myFloors; destination++) {
+            if (myWaiting[floor][destination] > 0) {
+                int openCar = findOpenCar(floor);
+                if (openCar >= 0) {
+                    boardOpenCar(openCar, floor);
+                } else {
+                    myGroup.callOutside(floor);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the car which has its doors open at the {@code floor} and has
+     * free places, {@code -1} if there is no such car.
+     */
+    private int findOpenCar(int floor) {
+        for (int car = 0; car < myOpenFloors.length; car++) {
+            if (myOpenFloors[car] == floor && getFreePlaces(car) > 0) {
+                return car;
+            }
+        }
+        return -1;
+    }
+
+    private void boardOpenCar(int car, int floor) {
+        int boarded = board(car, floor, getFreePlaces(car));
+        myGroup.getCars().get(car).exchange(0, boarded);
+    }
+
+    private int getFreePlaces(int car) {
+        return myCapacity == 0 ? Integer.MAX_VALUE
+                : myCapacity - myGroup.getCars().get(car).getLoad();
+    }
+
+    private void assign(int car, int origin, int destination, long now) {
+        long[] assigned = myAssigned[car][origin];
+        int count = myAssignedCount[car][origin];
+        if (assigned == null || count == assigned.length) {
+            assigned = myAssigned[car][origin] = assigned == null
+                    ? new long[8] : Arrays.copyOf(assigned, count * 2);
+        }
+        assigned[count] = now * FLOOR_RANGE + destination;
+        myAssignedCount[car][origin] = count + 1;
+    }
+
+    /**
+     * Boards the passengers assigned to the car at the floor in the order of
+     * their arrival, their car calls are made by the car.
+     *
+     * @return the number of the boarded passengers
+     */
+    private int boardAssigned(int car, int floor, int free) {
+        long now = myScheduler.now();
+        long[] assigned = myAssigned[car][floor];
+        int count = myAssignedCount[car][floor];
+        int boarded = Math.min(count, free);
+        for (int i = 0; i < boarded; i++) {
+            long since = assigned[i] / FLOOR_RANGE;
+            int destination = (int) (assigned[i] % FLOOR_RANGE);
+            myBoardedCount++;
+            myTotalWait += now - since;
+            myRiding[car][destination]++;
+            myRidingSince[car][destination] += since;
+        }
+        if (boarded > 0 && boarded < count) {
+            System.arraycopy(assigned, boarded, assigned, 0, count - boarded);
+        }
+        myAssignedCount[car][floor] = count - boarded;
+        return boarded;
+    }
+
+    /**
+     * Boards up to {@code free} passengers waiting at the floor. If only some
+     * of the passengers with the same destination board, they take the
+     * proportional part of the arrival times sum.
+     *
+     * @return the number of the boarded passengers
+     */
+    private int board(int car, int floor, int free) {
+        long now = myScheduler.now();
+        int[] waiting = myWaiting[floor];
+        long[] since = myWaitingSince[floor];
+        int boarded = 0;
+        for (int destination = 1; destination <= myFloors
+                && boarded < free; destination++) {
+            int count = waiting[destination];
+            if (count == 0) {
+                continue;
+            }
+            int taken = Math.min(count, free - boarded);
+            long takenSince = taken == count ? since[destination]
+                    : since[destination] * taken / count;
+            boarded += taken;
+            myBoardedCount += taken;
+            myTotalWait += taken * now - takenSince;
+            myRiding[car][destination] += taken;
+            myRidingSince[car][destination] += takenSince;
+            waiting[destination] -= taken;
+            since[destination] -= takenSince;
+            int target = destination;
+            myScheduler.schedule(() -> myGroup.callInside(car, target), 0);
+        }
+        return boarded;
+    }
+
+    private class CarOutput extends NullOutputProvider {
+
+        private final int myCar;
+
+        CarOutput(int car) {
+            myCar = car;
+        }
+
+        @Override
+        public void doorsOpened() {
+            TrafficGenerator.this.doorsOpened(myCar);
+        }
+
+        @Override
+        public void doorsClosing() {
+            TrafficGenerator.this.doorsClosing(myCar);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package su.spb.den;
+
+import java.util.Random;
+
+/**
+ * Origin and destination distribution of the generated passengers. The
+ * lobby is the first floor.
+ */
+enum TrafficProfile {
+    /**
+     * Morning rush: almost everybody goes up from the lobby.
+     */
+    UP_PEAK {
+
+        @Override
+        int origin(Random random, int floors) {
+            return random.nextDouble() < MAIN_SHARE ? LOBBY
+                    : upperFloor(random, floors);
+        }
+
+        @Override
+        int destination(Random random, int floors, int origin) {
+            return origin == LOBBY ? upperFloor(random, floors)
+                    : otherFloor(random, floors, origin);
+        }
+    },
+    /**
+     * Evening rush: almost everybody goes down to the lobby.
+     */
+    DOWN_PEAK {
+
+        @Override
+        int origin(Random random, int floors) {
+            return upperFloor(random, floors);
+        }
+
+        @Override
+        int destination(Random random, int floors, int origin) {
+            return random.nextDouble() < MAIN_SHARE ? LOBBY
+                    : otherFloor(random, floors, origin);
+        }
+    },
+    /**
+     * Lunch time: two way traffic to and from the lobby with some inter
+     * floor trips.
+     */
+    LUNCH {
+
+        @Override
+        int origin(Random random, int floors) {
+            return random.nextDouble() < LUNCH_FROM_LOBBY_SHARE ? LOBBY
+                    : upperFloor(random, floors);
+        }
+
+        @Override
+        int destination(Random random, int floors, int origin) {
+            if (origin == LOBBY) {
+                return upperFloor(random, floors);
+            }
+            return random.nextDouble() < LUNCH_TO_LOBBY_SHARE ? LOBBY
+                    : otherFloor(random, floors, origin);
+        }
+    },
+    /**
+     * Uniform traffic between all the floors.
+     */
+    INTER_FLOOR {
+
+        @Override
+        int origin(Random random, int floors) {
+            return 1 + random.nextInt(floors);
+        }
+
+        @Override
+        int destination(Random random, int floors, int origin) {
+            return otherFloor(random, floors, origin);
+        }
+    };
+
+    static final int LOBBY = 1;
+
+    private static final double MAIN_SHARE = 0.9;
+
+    private static final double LUNCH_FROM_LOBBY_SHARE = 0.45;
+
+    /**
+     * The share of the lunch passengers from the upper floors who go to the
+     * lobby, so about 45% of all the passengers go down to the lobby.
+     */
+    private static final double LUNCH_TO_LOBBY_SHARE = 0.8;
+
+    /**
+     * Returns the floor the passenger calls the elevator from.
+     */
+    abstract int origin(Random random, int floors);
+
+    /**
+     * Returns the floor the passenger goes to, never the {@code origin}.
+     */
+    abstract int destination(Random random, int floors, int origin);
+
+    /**
+     * Returns the profile by its name (case insensitive, dashes are allowed
+     * instead of underscores), {@code null} if there is no such profile.
+     */
+    static TrafficProfile forName(String name) {
+        for (TrafficProfile profile : values()) {
+            if (profile.name().equalsIgnoreCase(name.replace('-', '_'))) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    private static int upperFloor(Random random, int floors) {
+        return LOBBY + 1 + random.nextInt(floors - LOBBY);
+    }
+
+    private static int otherFloor(Random random, int floors, int origin) {
+        int floor = 1 + random.nextInt(floors - 1);
+        return floor >= origin ? floor + 1 : floor;
+    }
+}
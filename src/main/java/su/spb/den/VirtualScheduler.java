@@ -0,0 +1,141 @@
+package su.spb.den;
+
+import java.util.PriorityQueue;
+
+/**
+ * Discrete event scheduler with virtual time.
+ * <p>
+ * Scheduled tasks are kept in a queue ordered by their virtual time and are
+ * executed one by one by {@link #run()} in the calling thread, the current
+ * time jumps to the time of the executed task. There is no sleeping at all so
+ * hours of elevator traffic are simulated in milliseconds.
+ * <p>
+ * The scheduler is not thread safe: it's expected to be used by one thread
+ * only, the same thread which runs it.
+ */
+class VirtualScheduler implements Scheduler {
+
+    private final PriorityQueue<Event> myEvents = new PriorityQueue<>();
+
+    private long myTime;
+
+    private long mySequence;
+
+    private Thread myThread;
+
+    private boolean isShutdown;
+
+    VirtualScheduler() {
+        this(0);
+    }
+
+    VirtualScheduler(long startTime) {
+        myTime = startTime;
+    }
+
+    @Override
+    public long now() {
+        return myTime;
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delay) {
+        Event event = new Event(myTime + Math.max(0, delay), mySequence++,
+                task);
+        if (!isShutdown) {
+            myEvents.add(event);
+        }
+        return event;
+    }
+
+    @Override
+    public boolean isEventLoop() {
+        return true;
+    }
+
+    @Override
+    public boolean inEventLoop() {
+        return myThread == Thread.currentThread();
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        myEvents.clear();
+    }
+
+    /**
+     * Executes scheduled tasks until there are no more tasks.
+     */
+    void run() {
+        runUntil(Long.MAX_VALUE);
+    }
+
+    /**
+     * Executes all the tasks scheduled not later than the {@code time} and
+     * advances the current time to the {@code time}.
+     */
+    void runUntil(long time) {
+        Thread previous = myThread;
+        myThread = Thread.currentThread();
+        try {
+            while (!myEvents.isEmpty() && myEvents.peek().myTime <= time) {
+                Event event = myEvents.poll();
+                if (!event.isDone) {
+                    myTime = event.myTime;
+                    event.isDone = true;
+                    event.myTask.run();
+                }
+            }
+            if (time != Long.MAX_VALUE && time > myTime) {
+                myTime = time;
+            }
+        } finally {
+            myThread = previous;
+        }
+    }
+
+    /**
+     * Returns the number of scheduled tasks (including cancelled ones which
+     * are not yet removed from the queue).
+     */
+    int getPendingCount() {
+        return myEvents.size();
+    }
+
+    private static class Event implements Cancellable, Comparable<Event> {
+
+        private final long myTime;
+
+        private final long mySequence;
+
+        private final Runnable myTask;
+
+        private boolean isDone;
+
+        Event(long time, long sequence, Runnable task) {
+            myTime = time;
+            mySequence = sequence;
+            myTask = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            boolean result = !isDone;
+            isDone = true;
+            return result;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            int result = Long.compare(myTime, o.myTime);
+            return result == 0 ? Long.compare(mySequence, o.mySequence)
+                    : result;
+        }
+    }
+}
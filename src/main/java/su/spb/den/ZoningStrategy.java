@@ -0,0 +1,36 @@
+package su.spb.den;
+
+import java.util.List;
+
+/**
+ * Splits the building into contiguous zones, one zone per car, and assigns a
+ * call to the car which owns the zone of the call floor.
+ * <p>
+ * If the zone car is busy while some other car is idle then the nearest idle
+ * car serves the call so that idle cars don't stay unused.
+ */
+class ZoningStrategy implements AssignmentStrategy {
+
+    @Override
+    public int assign(int floor, List<ElevatorManager> cars,
+            Parameters params) {
+        int zoneSize = (params.getFloorNumbers() + cars.size() - 1)
+                / cars.size();
+        int zoneCar = Math.min((floor - 1) / zoneSize, cars.size() - 1);
+        if (cars.get(zoneCar).isIdle()) {
+            return zoneCar;
+        }
+        int result = zoneCar;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < cars.size(); i++) {
+            ElevatorManager car = cars.get(i);
+            int distance = Math.abs(car.getPosition() - floor);
+            if (car.isIdle() && distance < bestDistance) {
+                result = i;
+                bestDistance = distance;
+            }
+        }
+        return result;
+    }
+
+}
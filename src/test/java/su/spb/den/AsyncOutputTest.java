@@ -0,0 +1,89 @@
+package su.spb.den;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncOutputTest {
+
+    @Test
+    public void eventsAreDeliveredInOrder() throws InterruptedException {
+        Recorder recorder = new Recorder(null);
+        AsyncOutput output = new AsyncOutput(4, AsyncOutput.FullPolicy.BLOCK,
+                recorder);
+        OutputProvider car = output.forCar(1);
+        for (int i = 1; i <= 100; i++) {
+            car.floorPassed(i);
+        }
+        car.error("oops");
+        output.shutdown();
+
+        Assert.assertEquals(101, recorder.myEvents.size());
+        for (int i = 1; i <= 100; i++) {
+            Assert.assertEquals("1 FLOOR_PASSED " + i + " null",
+                    recorder.myEvents.get(i - 1));
+        }
+        Assert.assertEquals("1 ERROR 0 oops", recorder.myEvents.get(100));
+        Assert.assertTrue(recorder.myBatches > 0);
+        Assert.assertEquals(0, output.getDroppedCount());
+    }
+
+    @Test
+    public void eventsAreDroppedWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder(release);
+        AsyncOutput output = new AsyncOutput(4, AsyncOutput.FullPolicy.DROP,
+                recorder);
+        OutputProvider car = output.forCar(0);
+        car.doorsOpened();
+        Assert.assertTrue(recorder.myStarted.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            car.floorPassed(i);
+        }
+        release.countDown();
+        output.shutdown();
+
+        Assert.assertEquals(7, output.getDroppedCount());
+        Assert.assertEquals(4, recorder.myEvents.size());
+    }
+
+    private static class Recorder implements ElevatorEventListener {
+
+        private final List<String> myEvents = Collections
+                .synchronizedList(new ArrayList<>());
+
+        private final CountDownLatch myStarted = new CountDownLatch(1);
+
+        private final CountDownLatch myRelease;
+
+        private volatile int myBatches;
+
+        Recorder(CountDownLatch release) {
+            myRelease = release;
+        }
+
+        @Override
+        public void onEvent(int car, ElevatorEvent event, int floor,
+                String message) {
+            myEvents.add(car + " " + event + " " + floor + " " + message);
+            myStarted.countDown();
+            if (myRelease != null) {
+                try {
+                    myRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void endOfBatch() {
+            myBatches++;
+        }
+    }
+}
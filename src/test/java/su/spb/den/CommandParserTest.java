@@ -0,0 +1,90 @@
+package su.spb.den;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandParserTest {
+
+    @Test
+    public void commandsAreParsed() throws IOException {
+        CommandParser parser = parser(
+                "o 5\r\n\n# comment\n  @1500 i 7 2\nI12\n@20 o3  \nquit\no 4\n");
+
+        Assert.assertEquals(CommandParser.OUTSIDE, parser.next());
+        Assert.assertEquals(5, parser.getFloor());
+        Assert.assertEquals(CommandParser.NO_TIME, parser.getTime());
+
+        Assert.assertEquals(CommandParser.INSIDE, parser.next());
+        Assert.assertEquals(7, parser.getFloor());
+        Assert.assertEquals(2, parser.getCar());
+        Assert.assertEquals(1500, parser.getTime());
+        Assert.assertEquals(4, parser.getLine());
+
+        Assert.assertEquals(CommandParser.INSIDE, parser.next());
+        Assert.assertEquals(12, parser.getFloor());
+        Assert.assertEquals(1, parser.getCar());
+
+        Assert.assertEquals(CommandParser.OUTSIDE, parser.next());
+        Assert.assertEquals(3, parser.getFloor());
+        Assert.assertEquals(20, parser.getTime());
+
+        Assert.assertEquals(CommandParser.END, parser.next());
+    }
+
+    @Test
+    public void destinationCallsAreParsed() throws IOException {
+        CommandParser parser = parser("d 2 9\n@30 D5 1\nd 4\n");
+
+        Assert.assertEquals(CommandParser.DESTINATION, parser.next());
+        Assert.assertEquals(2, parser.getFloor());
+        Assert.assertEquals(9, parser.getDestination());
+
+        Assert.assertEquals(CommandParser.DESTINATION, parser.next());
+        Assert.assertEquals(5, parser.getFloor());
+        Assert.assertEquals(1, parser.getDestination());
+        Assert.assertEquals(30, parser.getTime());
+
+        Assert.assertEquals(CommandParser.INVALID, parser.next());
+        Assert.assertEquals(CommandParser.END, parser.next());
+    }
+
+    @Test
+    public void invalidLinesAreSkipped() throws IOException {
+        CommandParser parser = parser("x 5\no 2 3\n@ o 1\no\ni 4");
+
+        for (int line = 1; line <= 4; line++) {
+            Assert.assertEquals(CommandParser.INVALID, parser.next());
+            Assert.assertEquals(line, parser.getLine());
+        }
+        Assert.assertEquals(CommandParser.INSIDE, parser.next());
+        Assert.assertEquals(4, parser.getFloor());
+        Assert.assertEquals(CommandParser.END, parser.next());
+    }
+
+    @Test
+    public void batchIsServedUnderVirtualTime() throws IOException {
+        Parameters params = new Parameters(new String[] { "-cars", "2" });
+        Assert.assertTrue(params.isValid());
+        BatchInput batch = new BatchInput(params, new VirtualScheduler(),
+                null);
+        batch.run(new ByteArrayInputStream(
+                "@0 o 5\n@100 i 3 2\ni 30\no 1 1\n@5000 i 8 3\nd 4 7\n"
+                        .getBytes(StandardCharsets.US_ASCII)));
+
+        Assert.assertEquals(4, batch.getCallCount());
+        Assert.assertEquals(2, batch.getInvalidCount());
+        Assert.assertEquals(1, batch.getErrorCount());
+        Assert.assertTrue(batch.getDuration() > 0);
+        Assert.assertTrue(batch.getGroup().getCars().stream()
+                .allMatch(ElevatorManager::isIdle));
+    }
+
+    private static CommandParser parser(String input) {
+        return new CommandParser(new ByteArrayInputStream(
+                input.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,110 @@
+package su.spb.den;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ControlServerTest {
+
+    private ElevatorGroup myGroup;
+
+    private ControlServer myServer;
+
+    @Before
+    public void setUp() throws IOException {
+        Parameters params = new Parameters(
+                new String[] { "-speed", "30", "-cars", "2" }, false);
+        myServer = new ControlServer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                params);
+        myGroup = new ElevatorGroup(params,
+                car -> myServer.record(car, new NullOutputProvider()));
+        myServer.start(myGroup, null);
+    }
+
+    @After
+    public void tearDown() {
+        myServer.close();
+        myGroup.shutdown();
+    }
+
+    @Test
+    public void callsAreSubmittedInBatch() throws IOException {
+        HttpURLConnection connection = open(ControlServer.CALLS_PATH);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write("o 3\ni 2 2\n# comment\ni 2 3\no 99\nx 1\nd 2 5\nd 2 99\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertEquals(
+                "{\"outside\": 1, \"inside\": 1, \"destination\": 1, "
+                        + "\"invalid\": 4}",
+                read(connection.getInputStream()));
+
+        String state = read(open(ControlServer.STATE_PATH).getInputStream());
+        Assert.assertTrue(state, state.startsWith("[\n{\"car\": 1, "));
+        Assert.assertTrue(state, state.contains("{\"car\": 2, "));
+    }
+
+    @Test
+    public void wrongRequestsAreRejected() throws IOException {
+        Assert.assertEquals(405,
+                open(ControlServer.CALLS_PATH).getResponseCode());
+        Assert.assertEquals(404,
+                open(ControlServer.STATE_PATH + "/1").getResponseCode());
+        Assert.assertEquals(404,
+                open(ControlServer.METRICS_PATH).getResponseCode());
+    }
+
+    @Test(timeout = 10000)
+    public void eventsAreStreamed() throws IOException {
+        HttpURLConnection events = open(ControlServer.EVENTS_PATH);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                events.getInputStream(), StandardCharsets.UTF_8))) {
+            Assert.assertEquals(": connected", reader.readLine());
+
+            myGroup.callInside(1, 3);
+
+            String line;
+            while (!"event: doors_opened".equals(line = reader.readLine())) {
+                Assert.assertNotNull(line);
+            }
+            Assert.assertEquals("data: {\"car\": 2, \"floor\": 3}",
+                    reader.readLine());
+        } finally {
+            events.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL(
+                "http://localhost:" + myServer.getPort() + path)
+                        .openConnection();
+    }
+
+    private static String read(InputStream input) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            StringBuilder builder = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.append(builder.length() == 0 ? "" : "\n").append(line);
+            }
+            return builder.toString();
+        }
+    }
+}
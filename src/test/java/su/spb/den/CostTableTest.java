@@ -0,0 +1,49 @@
+package su.spb.den;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CostTableTest {
+
+    @Test
+    public void stopsAreFoundByFloorIndex() {
+        CostTable.Builder builder = new CostTable.Builder(
+                new Parameters(new String[0]));
+        builder.start(0, 1);
+        builder.accept(3);
+        builder.accept(5);
+        builder.accept(3);
+        CostTable table = builder.build(2);
+
+        Assert.assertEquals(2, table.getStopCount());
+        Assert.assertEquals(0, table.findStop(3));
+        Assert.assertEquals(1, table.findStop(5));
+        Assert.assertEquals(CostTable.NOT_PLANNED, table.findStop(4));
+        Assert.assertTrue(table.isStop(5));
+        Assert.assertFalse(table.isStop(4));
+    }
+
+    @Test
+    public void staleSnapshotKeepsItsStops() {
+        CostTable.Builder builder = new CostTable.Builder(
+                new Parameters(new String[0]));
+        builder.start(0, 1);
+        builder.accept(3);
+        builder.accept(5);
+        CostTable stale = builder.build(2);
+        long serveTime = stale.getServeTime(5, 2);
+
+        builder.start(1000, 2);
+        builder.accept(5);
+        CostTable current = builder.build(1);
+
+        Assert.assertEquals(0, current.findStop(5));
+        // the floor 3 is no longer planned, its entry still belongs to the
+        // stale snapshot
+        Assert.assertEquals(CostTable.NOT_PLANNED, current.findStop(3));
+        Assert.assertEquals(0, stale.findStop(3));
+        Assert.assertEquals(CostTable.SUPERSEDED, stale.findStop(5));
+        Assert.assertTrue(stale.isStop(5));
+        Assert.assertEquals(serveTime, stale.getServeTime(5, 2));
+    }
+}
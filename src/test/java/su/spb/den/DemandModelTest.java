@@ -0,0 +1,41 @@
+package su.spb.den;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DemandModelTest {
+
+    private static final long SLOT = DemandModel.SLOT_TIME;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void demandCoversNeighbourSlots() {
+        DemandModel model = new DemandModel(10, 0);
+        model.record(3, 1000);
+        model.record(3, 2000);
+
+        Assert.assertEquals(2, model.getDemand(3, 0));
+        Assert.assertEquals(2, model.getDemand(3, SLOT));
+        Assert.assertEquals(0, model.getDemand(4, SLOT));
+        Assert.assertEquals(0, model.getDemand(3, 2 * SLOT));
+        Assert.assertFalse(model.hasDemand(2 * SLOT));
+        Assert.assertEquals(2 * SLOT, model.getNextSlotTime(SLOT + 1));
+    }
+
+    @Test
+    public void previousDaysDecay() {
+        DemandModel model = new DemandModel(10, 0);
+        for (int i = 0; i < 4; i++) {
+            model.record(1, 1000);
+        }
+
+        // the same time of the next day is expected to be busy
+        Assert.assertEquals(2, model.getDemand(1, DAY - SLOT));
+        model.record(1, DAY);
+        Assert.assertEquals(3, model.getDemand(1, DAY));
+        Assert.assertEquals(0, model.getDemand(1, 3 * DAY));
+    }
+}
@@ -0,0 +1,185 @@
+package su.spb.den;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import su.spb.den.ElevatorManagerTest.RecordingOutputProvider;
+
+public class ElevatorGroupTest {
+
+    @Test
+    public void nearestStrategyUsesIdleCar() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorGroup group = new ElevatorGroup(
+                parameters("-cars", "2", "-strategy", "nearest"),
+                car -> new RecordingOutputProvider(scheduler), scheduler);
+
+        Assert.assertEquals(0, group.callOutside(10));
+        Assert.assertEquals(1, group.callOutside(1));
+        scheduler.run();
+        Assert.assertEquals(10, group.getCars().get(0).getPosition());
+        Assert.assertEquals(1, group.getCars().get(1).getPosition());
+    }
+
+    @Test
+    public void zoningStrategyUsesZoneCar() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorGroup group = new ElevatorGroup(
+                parameters("-cars", "2", "-strategy", "zoning"),
+                car -> new RecordingOutputProvider(scheduler), scheduler);
+
+        Assert.assertEquals(1, group.callOutside(8));
+        Assert.assertEquals(0, group.callOutside(3));
+    }
+
+    @Test
+    public void invalidFloorIsRejectedBeforeAssignment() {
+        for (String strategy : Arrays.asList(AssignmentStrategy.NEAREST,
+                AssignmentStrategy.ETA, AssignmentStrategy.ZONING)) {
+            VirtualScheduler scheduler = new VirtualScheduler();
+            List<RecordingOutputProvider> outputs = new ArrayList<>();
+            ElevatorGroup group = new ElevatorGroup(
+                    parameters("-cars", "3", "-strategy", strategy), car -> {
+                        RecordingOutputProvider output = new RecordingOutputProvider(
+                                scheduler);
+                        outputs.add(output);
+                        return output;
+                    }, scheduler);
+
+            Assert.assertEquals(-1, group.callOutside(999));
+            Assert.assertEquals(-1, group.callOutside(-20));
+            Assert.assertEquals(-1, group.callOutside(0));
+            Assert.assertTrue(group.callOutside(3) >= 0);
+            scheduler.run();
+
+            List<String> errors = outputs.get(0).events.subList(0, 3);
+            Assert.assertTrue(strategy, errors.stream()
+                    .allMatch(event -> event.startsWith("error")));
+        }
+    }
+
+    @Test
+    public void invalidDestinationIsRejectedBeforePlanning() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorGroup group = new ElevatorGroup(parameters("-cars", "3"),
+                car -> output, scheduler);
+
+        Assert.assertEquals(-1, group.callDestination(2, 999));
+        Assert.assertEquals(-1, group.callDestination(-20, 3));
+        Assert.assertEquals(2, output.events.size());
+        Assert.assertTrue(group.callDestination(2, 5) >= 0);
+        scheduler.run();
+
+        Assert.assertTrue(output.events.toString(),
+                output.events.stream().anyMatch(
+                        event -> event.startsWith("floor 5 ")));
+    }
+
+    @Test
+    public void fullCarGivesOutsideCallsUp() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorGroup group = new ElevatorGroup(
+                parameters("-cars", "2", "-capacity", "2"),
+                car -> new RecordingOutputProvider(scheduler), scheduler);
+        ElevatorManager first = group.getCars().get(0);
+        ElevatorManager second = group.getCars().get(1);
+
+        first.exchange(0, 2);
+        Assert.assertTrue(first.isFull());
+        Assert.assertEquals(1, group.callOutside(1));
+
+        first.callInside(8);
+        first.callOutside(3);
+        first.callOutside(4);
+        scheduler.runUntil(1000);
+        first.exchange(2, 0);
+        first.exchange(0, 2);
+        scheduler.run();
+
+        Assert.assertEquals(1, first.getBypassedCount());
+        Assert.assertEquals(4, first.getPosition());
+        Assert.assertEquals(3, second.getPosition());
+        Assert.assertTrue(first.isIdle() && second.isIdle());
+    }
+
+    @Test
+    public void idleCarIsParkedAtBusyFloor() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorGroup group = new ElevatorGroup(
+                parameters("-parking", "demand"),
+                car -> new RecordingOutputProvider(scheduler), scheduler);
+        ElevatorManager car = group.getCars().get(0);
+
+        group.callOutside(1);
+        scheduler.runUntil(1000);
+        group.callOutside(1);
+        group.callInside(0, 8);
+        scheduler.runUntil(20000);
+        Assert.assertEquals(8, car.getPosition());
+        scheduler.run();
+
+        Assert.assertEquals(1, car.getPosition());
+        Assert.assertTrue(car.isIdle());
+    }
+
+    @Test
+    public void energyWeightPrefersPlannedStop() {
+        Assert.assertEquals(1, assignToPlannedStop());
+        Assert.assertEquals(0, assignToPlannedStop("-energy", "5"));
+    }
+
+    /**
+     * Makes the second car idle at the top floor and the first one go to
+     * the floor below, then calls from that floor.
+     */
+    private int assignToPlannedStop(String... energy) {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        List<String> args = new ArrayList<>(Arrays.asList("-cars", "2"));
+        args.addAll(Arrays.asList(energy));
+        ElevatorGroup group = new ElevatorGroup(
+                parameters(args.toArray(new String[0])),
+                car -> new RecordingOutputProvider(scheduler), scheduler);
+        group.callInside(1, 10);
+        scheduler.run();
+        group.callInside(0, 9);
+        scheduler.runUntil(scheduler.now() + 1000);
+        return group.callOutside(9);
+    }
+
+    @Test
+    public void moreCarsServeCallsFaster() {
+        long oneCar = serveAll("-cars", "1");
+        long threeCars = serveAll("-cars", "3", "-strategy", "eta");
+        Assert.assertTrue(threeCars < oneCar);
+    }
+
+    private long serveAll(String... args) {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        List<RecordingOutputProvider> outputs = new ArrayList<>();
+        ElevatorGroup group = new ElevatorGroup(parameters(args), car -> {
+            RecordingOutputProvider output = new RecordingOutputProvider(
+                    scheduler);
+            outputs.add(output);
+            return output;
+        }, scheduler);
+        for (int floor : new int[] { 9, 2, 7, 4, 10, 3 }) {
+            group.callOutside(floor);
+        }
+        scheduler.run();
+        outputs.forEach(output -> Assert.assertFalse(output.events.stream()
+                .anyMatch(event -> event.startsWith("error"))));
+        return scheduler.now();
+    }
+
+    private static Parameters parameters(String... args) {
+        Parameters parameters = new Parameters(args);
+        Assert.assertTrue(parameters.isValid());
+        return parameters;
+    }
+}
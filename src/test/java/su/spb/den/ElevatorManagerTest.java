@@ -0,0 +1,553 @@
+package su.spb.den;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElevatorManagerTest {
+
+    @Test
+    public void outsideCallIsServedInVirtualTime() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        manager.callOutside(3);
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "floor 3 at 4000", "opened at 4700", "closing at 7700",
+                "closed at 8400"), output.events);
+    }
+
+    @Test
+    public void queuedCallsAreServedOneByOne() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        manager.callOutside(2);
+        manager.callInside(1);
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "opened at 2700", "closing at 5700", "closed at 6400",
+                "floor 1 at 8400", "opened at 9100", "closing at 12100",
+                "closed at 12800"), output.events);
+    }
+
+    @Test
+    public void costTableFollowsThePlan() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), new NullOutputProvider(),
+                scheduler);
+
+        Assert.assertEquals(4700, manager.getServeTime(3));
+
+        manager.callOutside(3);
+        manager.callOutside(5);
+        scheduler.runUntil(1000);
+
+        CostTable table = manager.getCostTable();
+        Assert.assertEquals(4700, manager.getServeTime(3));
+        Assert.assertEquals(13100, manager.getServeTime(5));
+        Assert.assertEquals(21500, manager.getServeTime(7));
+        Assert.assertEquals(5, table.getLastFloor());
+        Assert.assertEquals(16800, table.getFreeTime());
+
+        scheduler.runUntil(5000);
+        Assert.assertEquals(5, manager.getCostTable().getLastFloor());
+        Assert.assertTrue(manager.getServeTime(3) > 16800);
+    }
+
+    @Test
+    public void stateIsPublishedOnTransitions() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]),
+                new RecordingOutputProvider(scheduler), scheduler);
+
+        manager.callOutside(3);
+        manager.callOutside(5);
+        scheduler.runUntil(1000);
+        CarState state = manager.getState();
+        Assert.assertEquals(1, state.getPosition());
+        Assert.assertEquals(CarState.Direction.UP, state.getDirection());
+        Assert.assertEquals(CarState.Doors.CLOSED, state.getDoors());
+        Assert.assertEquals(2, state.getOutstandingCount());
+        Assert.assertEquals("floor 1 up, doors closed, stops [3, 5], queued 0",
+                state.toString());
+
+        scheduler.runUntil(2500);
+        Assert.assertEquals(2, manager.getState().getPosition());
+
+        scheduler.runUntil(5000);
+        Assert.assertEquals("floor 3 none, doors open, stops [5], queued 0",
+                manager.getState().toString());
+
+        scheduler.runUntil(8000);
+        Assert.assertEquals(CarState.Doors.CLOSING,
+                manager.getState().getDoors());
+
+        scheduler.run();
+        CarState last = manager.getState();
+        Assert.assertTrue(last.getSequence() > state.getSequence());
+        Assert.assertEquals("floor 5 none, doors closed, stops [], queued 0",
+                last.toString());
+        Assert.assertEquals(0, last.getOutstandingCount());
+    }
+
+    @Test
+    public void destinationCarCallBypassesFullQueue() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorManager[] manager = new ElevatorManager[1];
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler) {
+
+            @Override
+            public void doorsOpened() {
+                super.doorsOpened();
+                if (events.size() == 2) {
+                    // fills the queue before the car call of the destination
+                    manager[0].callInside(7);
+                    manager[0].callInside(8);
+                }
+            }
+        };
+        manager[0] = new ElevatorManager(
+                new Parameters(new String[] { "-queue", "2" }), output,
+                scheduler);
+
+        manager[0].callDestination(2, 3);
+        scheduler.run();
+
+        Assert.assertEquals(0, manager[0].getRejectedCount());
+        Assert.assertTrue(output.events.toString(),
+                output.events.contains("floor 3 at 8400"));
+        Assert.assertTrue(manager[0].isIdle());
+    }
+
+    @Test
+    public void destinationCallTakesPassengerToDestination() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        manager.callDestination(2, 3);
+        manager.callDestination(2, 3);
+        Assert.assertTrue(manager.hasDestination(2, 3));
+        scheduler.run();
+
+        Assert.assertFalse(manager.hasDestination(2, 3));
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "opened at 2700", "closing at 5700", "closed at 6400",
+                "floor 3 at 8400", "opened at 9100", "closing at 12100",
+                "closed at 12800"), output.events);
+        Assert.assertEquals(0, manager.getOutstandingCount());
+    }
+
+    @Test
+    public void boardingPassengersKeepDoorsOpen() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-capacity", "8" }), output,
+                scheduler);
+
+        manager.callOutside(2);
+        scheduler.runUntil(2700);
+        manager.exchange(0, 2);
+        Assert.assertEquals(2, manager.getLoad());
+        scheduler.runUntil(4000);
+        manager.exchange(0, 6);
+        Assert.assertTrue(manager.isFull());
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "opened at 2700", "closing at 10000", "closed at 10700"),
+                output.events);
+        Assert.assertEquals(8, manager.getState().getLoad());
+    }
+
+    @Test
+    public void exchangeKeepsLoadWithinCapacity() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-capacity", "4" }), output,
+                scheduler);
+
+        manager.exchange(-1, 2);
+        Assert.assertEquals(0, manager.getLoad());
+        Assert.assertTrue(output.events.get(0).startsWith("error"));
+
+        manager.exchange(3, 2);
+        Assert.assertEquals(2, manager.getLoad());
+        manager.exchange(0, 5);
+        Assert.assertEquals(4, manager.getLoad());
+        manager.exchange(1, 3);
+        Assert.assertEquals(4, manager.getLoad());
+        manager.exchange(9, 0);
+        Assert.assertEquals(0, manager.getLoad());
+        Assert.assertEquals(1, output.events.size());
+    }
+
+    @Test
+    public void nobodyBoardingClosesDoorsEarly() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+        long stopCost = manager.getCostTable().getStopCost();
+
+        manager.callOutside(2);
+        scheduler.runUntil(2700);
+        manager.exchange(0, 0);
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "opened at 2700", "closing at 3700", "closed at 4400"),
+                output.events);
+        // the learned dwell time is used for the next stops
+        Assert.assertEquals(2500, manager.getDwellTime());
+        Assert.assertEquals(stopCost - 500,
+                manager.getCostTable().getStopCost());
+    }
+
+    @Test
+    public void callDuringClosingReopensDoors() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        manager.callOutside(2);
+        scheduler.runUntil(6000);
+        manager.callOutside(2);
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "opened at 2700", "closing at 5700", "opened at 6300",
+                "closing at 9300", "closed at 10000"), output.events);
+        Assert.assertTrue(manager.isIdle());
+    }
+
+    @Test
+    public void invalidFloorIsRejected() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        manager.callOutside(11);
+        scheduler.run();
+
+        Assert.assertEquals(1, output.events.size());
+        Assert.assertTrue(output.events.get(0).startsWith("error"));
+    }
+
+    @Test
+    public void metricsAreCollected() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-metrics", "0" }),
+                new RecordingOutputProvider(scheduler), scheduler);
+
+        manager.callOutside(3);
+        scheduler.run();
+        manager.callInside(1);
+        scheduler.run();
+
+        ElevatorMetrics metrics = manager.getMetrics();
+        Assert.assertEquals(1, metrics.getWaitTime().getCount());
+        Assert.assertEquals(4700, metrics.getWaitTime().getMax());
+        Assert.assertEquals(1, metrics.getRideTime().getCount());
+        Assert.assertEquals(4700, metrics.getRideTime().getMax());
+        Assert.assertEquals(0, metrics.getTimerLag().getMax());
+        Assert.assertEquals(2, metrics.getTrips());
+        Assert.assertEquals(4, metrics.getFloorsTravelled());
+        // two moves of two floors of 3 meters
+        Assert.assertEquals(2 * (2 + 2 * 3 * 0.5), metrics.getEnergy(), 1e-9);
+        Assert.assertEquals(1.0, metrics.getUtilisation(scheduler.now()),
+                1e-9);
+        Assert.assertTrue(metrics.format(scheduler.now())
+                .contains("wait time, ms: count=1"));
+    }
+
+    @Test
+    public void metricsAreDisabledByDefault() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]),
+                new RecordingOutputProvider(scheduler), scheduler);
+
+        Assert.assertNull(manager.getMetrics());
+    }
+
+    @Test
+    public void repeatedCallsAreCoalesced() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        for (int i = 0; i < 10; i++) {
+            manager.callOutside(7);
+            manager.callInside(1);
+        }
+        Assert.assertEquals(2, manager.getOutstandingCount());
+        Assert.assertEquals(18, manager.getCoalescedCount());
+        scheduler.run();
+        Assert.assertTrue(manager.isIdle());
+
+        manager.callOutside(7);
+        manager.callOutside(7);
+        Assert.assertEquals(1, manager.getOutstandingCount());
+        scheduler.run();
+        for (int i = 0; i < 2; i++) {
+            manager.callInside(7);
+            Assert.assertEquals(1, manager.getOutstandingCount());
+            scheduler.run();
+        }
+        Assert.assertTrue(manager.isIdle());
+        Assert.assertEquals(2,
+                output.events.stream().filter(e -> e.startsWith("same"))
+                        .count());
+    }
+
+    @Test
+    public void fullQueueRejectsCalls() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-queue", "2" }), output,
+                scheduler);
+
+        for (int floor = 2; floor <= 5; floor++) {
+            manager.callOutside(floor);
+        }
+
+        Assert.assertEquals(2, manager.getQueueDepth());
+        Assert.assertEquals(2, manager.getRejectedCount());
+        Assert.assertEquals(2, manager.getOutstandingCount());
+        Assert.assertEquals(2, output.events.size());
+        scheduler.run();
+        Assert.assertEquals(0, manager.getQueueDepth());
+        Assert.assertEquals(2, manager.getMaxQueueDepth());
+        Assert.assertTrue(manager.isIdle());
+    }
+
+    @Test
+    public void fullQueueRejectsOnlyNewCalls() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-queue", "2" }), output,
+                scheduler);
+
+        manager.callOutside(3);
+        manager.callInside(5);
+        manager.callOutside(3);
+        manager.callInside(5);
+        manager.callOutside(4);
+
+        Assert.assertEquals(2, manager.getCoalescedCount());
+        Assert.assertEquals(1, manager.getRejectedCount());
+        Assert.assertEquals(2, manager.getOutstandingCount());
+        scheduler.run();
+        Assert.assertEquals(5, manager.getPosition());
+        Assert.assertTrue(manager.isIdle());
+    }
+
+    @Test
+    public void tripIsShortenedToStopOnTheWay() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[0]), output, scheduler);
+
+        manager.callOutside(5);
+        scheduler.runUntil(3000);
+        manager.callOutside(3);
+        manager.callOutside(2);
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 2 at 2000",
+                "floor 3 at 4000", "opened at 4700", "closing at 7700",
+                "closed at 8400", "floor 4 at 10400", "floor 5 at 12400",
+                "opened at 13100", "closing at 16100", "closed at 16800",
+                "floor 4 at 18800", "floor 3 at 20800", "floor 2 at 22800",
+                "opened at 23500", "closing at 26500", "closed at 27200"),
+                output.events);
+    }
+
+    @Test
+    public void quietTripWakesUpAtStopsOnly() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler) {
+
+            @Override
+            public boolean isFloorPassedReported() {
+                return false;
+            }
+        };
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-floors", "120" }), output,
+                scheduler);
+
+        manager.callOutside(100);
+        scheduler.runUntil(21000);
+        Assert.assertEquals(11, manager.getPosition());
+        Assert.assertEquals(1, scheduler.getPendingCount());
+        manager.callOutside(50);
+        manager.callOutside(5);
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("floor 50 at 98000",
+                "opened at 98700", "closing at 101700", "closed at 102400",
+                "floor 100 at 202400", "opened at 203100",
+                "closing at 206100", "closed at 206800", "floor 5 at 396800",
+                "opened at 397500", "closing at 400500", "closed at 401200"),
+                output.events);
+    }
+
+    @Test
+    public void lookPolicyStopsOnTheWay() {
+        List<String> fifo = floorsServed("fifo");
+        List<String> look = floorsServed("look");
+
+        Assert.assertEquals(Arrays.asList("2", "15", "3", "14"), fifo);
+        Assert.assertEquals(Arrays.asList("2", "3", "14", "15"), look);
+    }
+
+    @Test
+    public void metaCommandsAreNotStarvedByCalls() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        ElevatorManager[] manager = new ElevatorManager[1];
+        int[] maxOutstanding = new int[1];
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler) {
+
+            private int myFlood = 100;
+
+            @Override
+            public void doorsClosed() {
+                super.doorsClosed();
+                // the flood starts while the trip is finishing
+                manager[0].callInside(3);
+            }
+
+            @Override
+            public void sameFloorInside(int floor) {
+                super.sameFloorInside(floor);
+                maxOutstanding[0] = Math.max(maxOutstanding[0],
+                        manager[0].getOutstandingCount());
+                if (--myFlood > 0) {
+                    manager[0].callInside(floor);
+                }
+            }
+        };
+        manager[0] = new ElevatorManager(new Parameters(new String[0]),
+                output, scheduler);
+
+        manager[0].callInside(3);
+        scheduler.run();
+
+        Assert.assertEquals(100, output.events.stream()
+                .filter(event -> event.startsWith("same")).count());
+        Assert.assertTrue(String.valueOf(maxOutstanding[0]),
+                maxOutstanding[0] <= 2);
+        Assert.assertTrue(manager[0].isIdle());
+    }
+
+    private List<String> floorsServed(String policy) {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-floors", "15", "-policy",
+                        policy }),
+                output, scheduler);
+
+        for (int floor : new int[] { 2, 15, 3, 14 }) {
+            manager.callOutside(floor);
+        }
+        scheduler.run();
+
+        List<String> result = new ArrayList<>();
+        String lastFloor = "1";
+        for (String event : output.events) {
+            if (event.startsWith("floor")) {
+                lastFloor = event.split(" ")[1];
+            } else if (event.startsWith("opened")) {
+                result.add(lastFloor);
+            }
+        }
+        return result;
+    }
+
+    static class RecordingOutputProvider implements OutputProvider {
+
+        final List<String> events = new ArrayList<>();
+
+        private final Scheduler myScheduler;
+
+        RecordingOutputProvider(Scheduler scheduler) {
+            myScheduler = scheduler;
+        }
+
+        @Override
+        public void error(String error) {
+            record("error " + error);
+        }
+
+        @Override
+        public void floorPassed(int floor) {
+            record("floor " + floor);
+        }
+
+        @Override
+        public void doorsOpened() {
+            record("opened");
+        }
+
+        @Override
+        public void doorsClosed() {
+            record("closed");
+        }
+
+        @Override
+        public void doorsClosing() {
+            record("closing");
+        }
+
+        @Override
+        public void sameFloorInside(int floor) {
+            record("same " + floor);
+        }
+
+        private void record(String event) {
+            events.add(event + " at " + myScheduler.now());
+        }
+    }
+}
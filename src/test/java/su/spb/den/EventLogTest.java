@@ -0,0 +1,204 @@
+package su.spb.den;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import su.spb.den.ElevatorManagerTest.RecordingOutputProvider;
+
+public class EventLogTest {
+
+    @Test
+    public void recordsAreReadBack() throws IOException {
+        Path file = Files.createTempFile("elevator", ".log");
+        try {
+            long[] time = { 100 };
+            try (EventLog log = new EventLog(file, () -> time[0])) {
+                log.callOutside(1, 7);
+                time[0] = 250;
+                OutputProvider output = log.record(2,
+                        new NullOutputProvider());
+                output.floorPassed(3);
+                output.error("Unexpected floor: 42");
+                log.callInside(0, 12);
+                Assert.assertEquals(4, log.getRecordCount());
+            }
+
+            try (EventLog.Reader reader = new EventLog.Reader(file)) {
+                Assert.assertTrue(reader.next());
+                Assert.assertTrue(reader.isCall());
+                Assert.assertFalse(reader.isInside());
+                Assert.assertEquals(1, reader.getCar());
+                Assert.assertEquals(7, reader.getFloor());
+                Assert.assertEquals(100, reader.getTime());
+
+                Assert.assertTrue(reader.next());
+                Assert.assertEquals(ElevatorEvent.FLOOR_PASSED,
+                        reader.getEvent());
+                Assert.assertEquals(2, reader.getCar());
+                Assert.assertEquals(3, reader.getFloor());
+                Assert.assertEquals(250, reader.getTime());
+
+                Assert.assertTrue(reader.next());
+                Assert.assertEquals(ElevatorEvent.ERROR, reader.getEvent());
+                Assert.assertEquals("Unexpected floor: 42",
+                        reader.getMessage());
+
+                Assert.assertTrue(reader.next());
+                Assert.assertTrue(reader.isInside());
+                Assert.assertNull(reader.getEvent());
+                Assert.assertEquals(12, reader.getFloor());
+
+                Assert.assertFalse(reader.next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void recordsAreFlushedPeriodically() throws IOException {
+        Path file = Files.createTempFile("elevator", ".log");
+        try {
+            VirtualScheduler scheduler = new VirtualScheduler();
+            EventLog log = new EventLog(file, scheduler::now);
+            log.flushEvery(scheduler, 1000);
+            log.callOutside(0, 3);
+            Assert.assertEquals(0, Files.size(file));
+
+            scheduler.runUntil(1000);
+            Assert.assertEquals(6 + EventLog.RECORD_SIZE, Files.size(file));
+
+            log.close();
+            log.close();
+            // the flush task stops with the log
+            scheduler.run();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void foreignFileIsNotAppended() throws IOException {
+        Path file = Files.createTempFile("elevator", ".log");
+        try {
+            Files.write(file, new byte[] { 'E', 'L', 'O', 'G', 0, 1 });
+            try {
+                new EventLog(file, () -> 0).close();
+                Assert.fail("The version 1 log is appended");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage(),
+                        e.getMessage().contains("version 1"));
+            }
+
+            Files.write(file, "o 3\n".getBytes(StandardCharsets.US_ASCII));
+            try {
+                new EventLog(file, () -> 0).close();
+                Assert.fail("The text file is appended");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage(),
+                        e.getMessage().startsWith("Not an event log"));
+            }
+            Assert.assertEquals(4, Files.size(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void destinationCallsAreReplayed() throws IOException {
+        Path file = Files.createTempFile("elevator", ".log");
+        try {
+            try (EventLog log = new EventLog(file, () -> 300)) {
+                log.callDestination(1, 2, 6);
+                log.callOutside(0, 4);
+            }
+
+            try (EventLog.Reader reader = new EventLog.Reader(file)) {
+                Assert.assertTrue(reader.next());
+                Assert.assertTrue(reader.isCall());
+                Assert.assertTrue(reader.isDestination());
+                Assert.assertFalse(reader.isInside());
+                Assert.assertNull(reader.getEvent());
+                Assert.assertEquals(1, reader.getCar());
+                Assert.assertEquals(2, reader.getFloor());
+                Assert.assertEquals(6, reader.getDestination());
+
+                Assert.assertTrue(reader.next());
+                Assert.assertFalse(reader.isDestination());
+                Assert.assertEquals(4, reader.getFloor());
+                Assert.assertFalse(reader.next());
+            }
+
+            VirtualScheduler scheduler = new VirtualScheduler();
+            RecordingOutputProvider output = new RecordingOutputProvider(
+                    scheduler);
+            EventReplay replay = new EventReplay(parameters("-cars", "2"),
+                    car -> output, scheduler);
+            replay.replay(file);
+
+            Assert.assertEquals(2, replay.getCallCount());
+            Assert.assertTrue(output.events.toString(),
+                    output.events.stream()
+                            .anyMatch(event -> event.startsWith("floor 6 ")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void replayReproducesRecordedTraffic() throws IOException {
+        Path file = Files.createTempFile("elevator", ".log");
+        try {
+            VirtualScheduler scheduler = new VirtualScheduler(5000);
+            List<String> recorded;
+            try (EventLog log = new EventLog(file, scheduler::now)) {
+                RecordingOutputProvider output = new RecordingOutputProvider(
+                        scheduler);
+                ElevatorManager manager = new ElevatorManager(parameters(),
+                        log.record(0, output), scheduler);
+                manager.callOutside(4);
+                log.callOutside(0, 4);
+                scheduler.runUntil(6000);
+                manager.callInside(9);
+                log.callInside(0, 9);
+                scheduler.run();
+                recorded = shift(output.events, 5000);
+            }
+
+            VirtualScheduler replayScheduler = new VirtualScheduler();
+            RecordingOutputProvider output = new RecordingOutputProvider(
+                    replayScheduler);
+            EventReplay replay = new EventReplay(parameters(), car -> output,
+                    replayScheduler);
+            replay.replay(file);
+
+            Assert.assertEquals(2, replay.getCallCount());
+            Assert.assertEquals(recorded, output.events);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<String> shift(List<String> events, long start) {
+        List<String> result = new ArrayList<>();
+        for (String event : events) {
+            int index = event.lastIndexOf(' ');
+            result.add(event.substring(0, index + 1)
+                    + (Long.parseLong(event.substring(index + 1)) - start));
+        }
+        return result;
+    }
+
+    private static Parameters parameters(String... args) {
+        Parameters parameters = new Parameters(args);
+        Assert.assertTrue(parameters.isValid());
+        return parameters;
+    }
+}
@@ -0,0 +1,66 @@
+package su.spb.den;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventLoopGroupTest {
+
+    private static final int BUILDINGS = 300;
+
+    @Test
+    public void buildingsShareEventLoops() throws InterruptedException {
+        EventLoopGroup loops = new EventLoopGroup(2);
+        try {
+            Set<Scheduler> schedulers = Collections
+                    .newSetFromMap(new IdentityHashMap<>());
+            Set<Thread> threads = Collections
+                    .newSetFromMap(new IdentityHashMap<>());
+            Parameters params = new Parameters(
+                    new String[] { "-speed", "30", "-ent", "0" });
+            CountDownLatch closed = new CountDownLatch(BUILDINGS);
+            List<ElevatorManager> managers = new ArrayList<>();
+            for (int i = 0; i < BUILDINGS; i++) {
+                Scheduler scheduler = loops.next();
+                schedulers.add(scheduler);
+                managers.add(new ElevatorManager(params,
+                        new ElevatorManagerTest.RecordingOutputProvider(
+                                scheduler) {
+
+                            @Override
+                            public void doorsClosed() {
+                                super.doorsClosed();
+                                synchronized (threads) {
+                                    threads.add(Thread.currentThread());
+                                }
+                                closed.countDown();
+                            }
+                        }, scheduler));
+            }
+            Assert.assertEquals(2, loops.getThreadCount());
+            Assert.assertEquals(2, schedulers.size());
+
+            for (int i = 0; i < BUILDINGS; i++) {
+                managers.get(i).callOutside(i % 3 + 1);
+            }
+            Assert.assertTrue(closed.await(20, TimeUnit.SECONDS));
+            for (int i = 0; i < BUILDINGS; i++) {
+                Assert.assertEquals(i % 3 + 1, managers.get(i).getPosition());
+            }
+            // all the buildings are served by the threads of the loops
+            synchronized (threads) {
+                Assert.assertEquals(2, threads.size());
+                Assert.assertFalse(threads.contains(Thread.currentThread()));
+            }
+        } finally {
+            loops.shutdown();
+        }
+    }
+}
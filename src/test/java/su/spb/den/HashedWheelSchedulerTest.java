@@ -0,0 +1,164 @@
+package su.spb.den;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashedWheelSchedulerTest {
+
+    private final HashedWheelScheduler myScheduler = new HashedWheelScheduler(
+            1, 8);
+
+    @After
+    public void tearDown() {
+        myScheduler.shutdown();
+    }
+
+    @Test
+    public void tasksAreExecutedInDeadlineOrder() throws InterruptedException {
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        // the delays are longer than the wheel round
+        for (int delay : new int[] { 60, 20, 40 }) {
+            myScheduler.schedule(() -> {
+                executed.add(delay);
+                latch.countDown();
+            }, delay);
+        }
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(20, 40, 60), executed);
+        Assert.assertEquals(0, myScheduler.getPendingCount());
+    }
+
+    @Test
+    public void cancelledTaskIsNotExecuted() throws InterruptedException {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        Scheduler.Cancellable cancelled = myScheduler
+                .schedule(() -> executed.add("cancelled"), 20);
+        myScheduler.schedule(latch::countDown, 40);
+
+        Assert.assertTrue(cancelled.cancel());
+        Assert.assertFalse(cancelled.cancel());
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executed.isEmpty());
+    }
+
+    @Test
+    public void staleHandleDoesNotCancelRecycledNode()
+            throws InterruptedException {
+        CountDownLatch first = new CountDownLatch(1);
+        Scheduler.Cancellable stale = myScheduler.schedule(first::countDown,
+                1);
+        Assert.assertTrue(first.await(5, TimeUnit.SECONDS));
+        // lets the worker release the node of the executed task, the next
+        // task gets it
+        Thread.sleep(20);
+
+        CountDownLatch second = new CountDownLatch(1);
+        myScheduler.schedule(second::countDown, 40);
+
+        Assert.assertFalse(stale.cancel());
+        Assert.assertTrue(second.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failingTaskDoesNotStopWorker() throws InterruptedException {
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        myScheduler.setErrorHandler((thread, error) -> errors.add(error));
+        CountDownLatch latch = new CountDownLatch(1);
+        myScheduler.schedule(() -> {
+            throw new AssertionError("failed");
+        }, 10);
+        myScheduler.schedule(latch::countDown, 30);
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, errors.size());
+        Assert.assertEquals("failed", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void managerIsServedInRealTime() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-speed", "30", "-ent", "0" }),
+                new ElevatorManagerTest.RecordingOutputProvider(myScheduler) {
+
+                    @Override
+                    public void doorsClosed() {
+                        super.doorsClosed();
+                        closed.countDown();
+                    }
+                }, myScheduler);
+        manager.callOutside(3);
+
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, manager.getPosition());
+        manager.shutdown();
+    }
+
+    @Test
+    public void eventLoopRunsImmediateTasksInOrder()
+            throws InterruptedException {
+        HashedWheelScheduler loop = new HashedWheelScheduler(1, 8, true);
+        try {
+            Assert.assertTrue(loop.isEventLoop());
+            List<Integer> executed = new CopyOnWriteArrayList<>();
+            List<Thread> threads = new CopyOnWriteArrayList<>();
+            CountDownLatch latch = new CountDownLatch(4);
+            loop.schedule(() -> {
+                executed.add(40);
+                latch.countDown();
+            }, 40);
+            for (int i = 0; i < 3; i++) {
+                int index = i;
+                loop.schedule(() -> {
+                    executed.add(index);
+                    threads.add(Thread.currentThread());
+                    latch.countDown();
+                }, 0);
+            }
+
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList(0, 1, 2, 40), executed);
+            Assert.assertFalse(threads.contains(Thread.currentThread()));
+            Assert.assertEquals(1, threads.stream().distinct().count());
+            Assert.assertEquals(0, loop.getPendingCount());
+        } finally {
+            loop.shutdown();
+        }
+    }
+
+    @Test
+    public void managerIsServedOnEventLoop() throws InterruptedException {
+        HashedWheelScheduler loop = new HashedWheelScheduler(1, 8, true);
+        try {
+            CountDownLatch closed = new CountDownLatch(1);
+            ElevatorManager manager = new ElevatorManager(
+                    new Parameters(
+                            new String[] { "-speed", "30", "-ent", "0" }),
+                    new ElevatorManagerTest.RecordingOutputProvider(loop) {
+
+                        @Override
+                        public void doorsClosed() {
+                            super.doorsClosed();
+                            closed.countDown();
+                        }
+                    }, loop);
+            manager.callOutside(3);
+
+            Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(3, manager.getPosition());
+            manager.shutdown();
+        } finally {
+            loop.shutdown();
+        }
+    }
+}
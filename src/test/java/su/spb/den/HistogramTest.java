@@ -0,0 +1,53 @@
+package su.spb.den;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void percentilesAreWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(10_000, histogram.getCount());
+        Assert.assertEquals(10_000, histogram.getMax());
+        Assert.assertEquals(5000.5, histogram.getMean(), 1e-9);
+        assertClose(5000, histogram.getPercentile(50));
+        assertClose(9900, histogram.getPercentile(99));
+        Assert.assertEquals(10_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-1);
+
+        Assert.assertEquals(0, histogram.getPercentile(0));
+        Assert.assertEquals(3, histogram.getPercentile(50));
+        Assert.assertEquals(7, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void histogramsAreMerged() {
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+        first.record(10);
+        second.record(1_000_000);
+
+        first.add(second);
+
+        Assert.assertEquals(2, first.getCount());
+        Assert.assertEquals(1_000_000, first.getMax());
+        Assert.assertEquals(10, first.getPercentile(50));
+    }
+
+    private static void assertClose(long expected, long actual) {
+        Assert.assertTrue(expected + " vs " + actual,
+                Math.abs(expected - actual) <= expected / 16);
+    }
+}
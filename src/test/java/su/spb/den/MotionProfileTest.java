@@ -0,0 +1,78 @@
+package su.spb.den;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import su.spb.den.ElevatorManagerTest.RecordingOutputProvider;
+
+public class MotionProfileTest {
+
+    @Test
+    public void constantSpeedByDefault() {
+        MotionProfile profile = new MotionProfile(10, 3, 1.5, 0, 0);
+        Assert.assertEquals(6000, profile.getTravelTime(4, 1));
+        Assert.assertEquals(4000, profile.getPassTime(3, 2));
+        Assert.assertEquals(1, profile.getPassedFloors(3, 3999));
+        Assert.assertTrue(profile.canStopAt(2, 3999));
+        Assert.assertFalse(profile.canStopAt(2, 4000));
+    }
+
+    @Test
+    public void accelerationWithoutJerkLimit() {
+        MotionProfile profile = new MotionProfile(20, 3, 2, 1, 0);
+        // the peak speed of a floor is sqrt(3) m/s
+        Assert.assertEquals(3464, profile.getTravelTime(1, 2));
+        // 2 s to accelerate along 2 m, 26 m at 2 m/s and 2 s to brake
+        Assert.assertEquals(17000, profile.getTravelTime(1, 11));
+        // the first floor is passed after the 2 m of the acceleration
+        Assert.assertEquals(2500, profile.getPassTime(10, 1));
+    }
+
+    @Test
+    public void accelerationAndJerkLimits() {
+        MotionProfile profile = new MotionProfile(20, 3, 2, 1, 1);
+        // 3 s to accelerate along 3 m, 24 m at 2 m/s and 3 s to brake
+        Assert.assertEquals(18000, profile.getTravelTime(11, 1));
+        Assert.assertEquals(4606, profile.getTravelTime(5, 6));
+
+        long previous = 0;
+        for (int floor = 1; floor <= 10; floor++) {
+            long time = profile.getPassTime(10, floor);
+            Assert.assertTrue(time > previous);
+            Assert.assertEquals(floor, profile.getPassedFloors(10, time));
+            Assert.assertEquals(floor - 1,
+                    profile.getPassedFloors(10, time - 1));
+            previous = time;
+        }
+        Assert.assertEquals(18000, previous);
+        Assert.assertTrue(profile.canStopAt(5, 1000));
+        Assert.assertFalse(profile.canStopAt(5,
+                profile.getTravelTime(0, 5) - 2000));
+    }
+
+    @Test
+    public void tripFollowsProfile() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RecordingOutputProvider output = new RecordingOutputProvider(
+                scheduler);
+        ElevatorManager manager = new ElevatorManager(
+                new Parameters(new String[] { "-speed", "2", "-accel", "1",
+                        "-jerk", "1" }),
+                output, scheduler);
+
+        manager.callOutside(4);
+        scheduler.runUntil(5000);
+        // too late to brake for the 3rd floor, it's served after the 4th
+        manager.callOutside(3);
+        scheduler.run();
+
+        // 3 s to accelerate along 3 m, 3 m at 2 m/s and 3 s to brake
+        Assert.assertEquals(Arrays.asList("floor 2 at 3000",
+                "floor 3 at 4500", "floor 4 at 7500", "opened at 8200",
+                "closing at 11200", "closed at 11900", "floor 3 at 16506",
+                "opened at 17206", "closing at 20206", "closed at 20906"),
+                output.events);
+    }
+}
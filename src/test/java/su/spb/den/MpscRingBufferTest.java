@@ -0,0 +1,81 @@
+package su.spb.den;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void fullBufferRejectsElements() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        Assert.assertEquals(4, buffer.getCapacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(4, buffer.size());
+
+        Assert.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assert.assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        Assert.assertNull(buffer.poll());
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void singleSlotIsNotOverwritten() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1);
+        Assert.assertEquals(2, buffer.getCapacity());
+        Assert.assertTrue(buffer.offer(0));
+        Assert.assertTrue(buffer.offer(1));
+        Assert.assertFalse(buffer.offer(2));
+        Assert.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assert.assertEquals(Integer.valueOf(1), buffer.poll());
+        Assert.assertNull(buffer.poll());
+    }
+
+    @Test
+    public void concurrentProducersDontLoseElements()
+            throws InterruptedException {
+        int producers = 4;
+        int perProducer = 100_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(producer)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        start.countDown();
+
+        int[] counts = new int[producers];
+        for (int received = 0; received < producers * perProducer;) {
+            Integer element = buffer.poll();
+            if (element == null) {
+                Thread.yield();
+            } else {
+                counts[element]++;
+                received++;
+            }
+        }
+        for (int count : counts) {
+            Assert.assertEquals(perProducer, count);
+        }
+    }
+}
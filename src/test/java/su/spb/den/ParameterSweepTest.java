@@ -0,0 +1,44 @@
+package su.spb.den;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParameterSweepTest {
+
+    private static final String[] ARGS = { "-traffic", "inter-floor",
+            "-duration", "5", "-speed", "9", "-sweep", "unused" };
+
+    @Test
+    public void combinationsAreSimulated() {
+        ParameterSweep sweep = new ParameterSweep(ARGS,
+                "cars=1:2;speed=1.5:2.5:0.5;floors=3,10");
+        Assert.assertEquals(6, sweep.getPointCount());
+        Assert.assertEquals(6, sweep.getInvalidCount());
+
+        List<double[]> results = sweep.run(2);
+        String csv = sweep.format(results, ParameterSweep.CSV);
+        String[] lines = csv.split("\n");
+        Assert.assertEquals(7, lines.length);
+        Assert.assertTrue(lines[0].startsWith("cars,speed,floors,passengers"));
+        Assert.assertTrue(lines[1].startsWith("1,1.5,10,"));
+        Assert.assertTrue(lines[6].startsWith("2,2.5,10,"));
+        for (double[] row : results) {
+            Assert.assertEquals(row[0], row[1], 0);
+        }
+    }
+
+    @Test
+    public void parallelRunMatchesSequentialRun() {
+        ParameterSweep sweep = new ParameterSweep(ARGS, "ent=1,2,3,4");
+        String sequential = sweep.format(sweep.run(1), ParameterSweep.JSON);
+        String parallel = sweep.format(sweep.run(4), ParameterSweep.JSON);
+        Assert.assertEquals(sequential, parallel);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRange() {
+        new ParameterSweep(ARGS, "speed=1:2:0");
+    }
+}
@@ -35,5 +35,57 @@ public class ParametersTest {
         Assert.assertTrue(parameters.isValid());
     }
 
+    @Test
+    public void carsAndStrategyAreParsed() {
+        Parameters parameters = new Parameters(new String[] { "-cars", "4",
+                "-strategy", "zoning" });
+        Assert.assertEquals(4, parameters.getCars());
+        Assert.assertEquals("zoning", parameters.getStrategy());
+        Assert.assertTrue(parameters.isValid());
+    }
+
+    @Test
+    public void queueCapacityIsPowerOfTwo() {
+        Assert.assertEquals(128,
+                new Parameters(new String[] { "-queue", "128" })
+                        .getQueueCapacity());
+        Assert.assertTrue(
+                new Parameters(new String[] { "-queue", "2" }).isValid());
+        Assert.assertFalse(
+                new Parameters(new String[] { "-queue", "1" }).isValid());
+        Assert.assertFalse(
+                new Parameters(new String[] { "-queue", "100" }).isValid());
+        Assert.assertFalse(
+                new Parameters(new String[] { "-queue", "0" }).isValid());
+    }
+
+    @Test
+    public void overloadPolicies() {
+        Assert.assertEquals(IngestionQueue.OverloadPolicy.BLOCK,
+                new Parameters(new String[] { "-overload", "block" })
+                        .getOverloadPolicy());
+        // the repeated calls are coalesced before the queue by any policy
+        Assert.assertFalse(
+                new Parameters(new String[] { "-overload", "coalesce" })
+                        .isValid());
+    }
+
+    @Test
+    public void unknownStrategy() {
+        Parameters parameters = new Parameters(
+                new String[] { "-cars", "2", "-strategy", "random" });
+        Assert.assertFalse(parameters.isValid());
+    }
+
+    @Test
+    public void highRiseFloors() {
+        Assert.assertTrue(
+                new Parameters(new String[] { "-floors", "120" }).isValid());
+        Assert.assertFalse(
+                new Parameters(new String[] { "-floors", "501" }).isValid());
+        Assert.assertFalse(
+                new Parameters(new String[] { "-floors", "4" }).isValid());
+    }
+
     // TODO : more tests, no time for this
 }
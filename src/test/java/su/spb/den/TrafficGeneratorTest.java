@@ -0,0 +1,91 @@
+package su.spb.den;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrafficGeneratorTest {
+
+    @Test
+    public void allPassengersAreDelivered() {
+        for (TrafficProfile profile : TrafficProfile.values()) {
+            TrafficGenerator generator = generate(profile, 42);
+            Assert.assertTrue(generator.getArrivedCount() > 50);
+            Assert.assertEquals(profile.name(), generator.getArrivedCount(),
+                    generator.getDeliveredCount());
+            Assert.assertTrue(generator.getMeanJourney() > generator
+                    .getMeanWait());
+        }
+    }
+
+    @Test
+    public void destinationDispatchDeliversAllPassengers() {
+        Parameters params = new Parameters(new String[] { "-cars", "3",
+                "-traffic", "up-peak", "-dispatch", "destination" }, false);
+        Assert.assertTrue(params.isDestinationDispatch());
+        TrafficGenerator generator = new TrafficGenerator(params,
+                TrafficProfile.UP_PEAK, 20, 20 * 60 * 1000, 3);
+        generator.run();
+
+        Assert.assertTrue(generator.getArrivedCount() > 300);
+        Assert.assertEquals(generator.getArrivedCount(),
+                generator.getDeliveredCount());
+        Assert.assertTrue(generator.format().contains("destination"));
+    }
+
+    @Test
+    public void limitedCapacityDeliversAllPassengers() {
+        for (String dispatch : new String[] { "hall", "destination" }) {
+            Parameters params = new Parameters(new String[] { "-cars", "2",
+                    "-capacity", "4", "-traffic", "up-peak", "-dispatch",
+                    dispatch }, false);
+            TrafficGenerator generator = new TrafficGenerator(params,
+                    TrafficProfile.UP_PEAK, 20, 10 * 60 * 1000, 5);
+            generator.run();
+
+            Assert.assertEquals(dispatch, generator.getArrivedCount(),
+                    generator.getDeliveredCount());
+            for (ElevatorManager car : generator.getGroup().getCars()) {
+                Assert.assertEquals(0, car.getLoad());
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameRun() {
+        TrafficGenerator first = generate(TrafficProfile.LUNCH, 7);
+        TrafficGenerator second = generate(TrafficProfile.LUNCH, 7);
+        TrafficGenerator other = generate(TrafficProfile.LUNCH, 8);
+
+        Assert.assertEquals(first.format(), second.format());
+        Assert.assertNotEquals(first.format(), other.format());
+    }
+
+    @Test
+    public void upPeakStartsAtLobby() {
+        Random random = new Random(1);
+        int fromLobby = 0;
+        for (int i = 0; i < 1000; i++) {
+            int origin = TrafficProfile.UP_PEAK.origin(random, 10);
+            int destination = TrafficProfile.UP_PEAK.destination(random, 10,
+                    origin);
+            Assert.assertNotEquals(origin, destination);
+            Assert.assertTrue(destination >= 1 && destination <= 10);
+            if (origin == TrafficProfile.LOBBY) {
+                fromLobby++;
+            }
+        }
+        Assert.assertTrue(fromLobby > 850);
+    }
+
+    private static TrafficGenerator generate(TrafficProfile profile,
+            long seed) {
+        Parameters params = new Parameters(new String[] { "-cars", "2" });
+        Assert.assertTrue(params.isValid());
+        TrafficGenerator generator = new TrafficGenerator(params, profile, 6,
+                20 * 60 * 1000, seed);
+        generator.run();
+        return generator;
+    }
+}